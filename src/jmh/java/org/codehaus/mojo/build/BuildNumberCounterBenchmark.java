@@ -0,0 +1,87 @@
+package org.codehaus.mojo.build;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Measures the build number counters under contention: every benchmark thread is a build taking a number.
+ * <p>
+ * <code>file</code> increments a properties file shared by all threads, <code>lease-N</code> leases blocks of N
+ * numbers from a {@link LocalCounterServer} which answers after <code>latencyMillis</code>. The threads are spread over
+ * <code>machines</code> lease files, each standing for one build agent.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(8)
+public class BuildNumberCounterBenchmark {
+    private static final List<String> KEYS = Collections.singletonList("buildNumber");
+
+    @Param({"file", "lease-1", "lease-100"})
+    public String counter;
+
+    @Param({"1", "8"})
+    public int machines;
+
+    @Param({"5"})
+    public long latencyMillis;
+
+    private File directory;
+
+    private LocalCounterServer server;
+
+    private final AtomicInteger threads = new AtomicInteger();
+
+    @State(Scope.Thread)
+    public static class Build {
+        private File file;
+
+        private BuildNumberService service;
+
+        @Setup(Level.Trial)
+        public void setUp(BuildNumberCounterBenchmark benchmark) {
+            int machine = benchmark.threads.getAndIncrement() % benchmark.machines;
+            file = new File(benchmark.directory, "machine" + machine + "/buildNumber.properties");
+            if (benchmark.counter.startsWith("lease-")) {
+                int leaseSize = Integer.parseInt(benchmark.counter.substring("lease-".length()));
+                service = new BuildNumberService(benchmark.server.getUrl(), leaseSize, file);
+            }
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("buildnumber-counter").toFile();
+        server = LocalCounterServer.start();
+        server.setLatencyMillis(latencyMillis);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        server.close();
+        FileUtils.deleteDirectory(directory);
+    }
+
+    @Benchmark
+    public int[] next(Build build) throws IOException {
+        return build.service != null ? build.service.next(KEYS) : BuildNumberStore.increment(build.file, KEYS);
+    }
+}
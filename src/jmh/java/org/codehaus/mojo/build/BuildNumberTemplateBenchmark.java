@@ -0,0 +1,66 @@
+package org.codehaus.mojo.build;
+
+import java.text.MessageFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Compares parsing the <code>format</code> of {@link CreateMojo} for every module, as done before, with the template
+ * compiled once per session.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class BuildNumberTemplateBenchmark {
+    @Param({"{2,number}.{1}", "{0,date,yyyy-MM-dd HH:mm:ss}-{1}-r{2,number,integer}"})
+    public String format;
+
+    @Param({"en_US"})
+    public String locale;
+
+    private final Log log = new SystemStreamLog();
+
+    private final List<String> items = Arrays.asList("timestamp", "scmVersion", "buildNumber");
+
+    private MavenSession session;
+
+    private Object[] arguments;
+
+    @Setup
+    @SuppressWarnings("deprecation")
+    public void setUp() {
+        session = new MavenSession(
+                null,
+                new DefaultRepositorySystemSession(),
+                new DefaultMavenExecutionRequest(),
+                new DefaultMavenExecutionResult());
+        arguments = new Object[] {new Date(), "0a1b2c3", 42};
+    }
+
+    @Benchmark
+    public String parseEveryTime() {
+        return new MessageFormat(format, BuildNumberTemplate.parseLocale(locale)).format(arguments);
+    }
+
+    @Benchmark
+    public String compiledTemplate() {
+        return BuildNumberTemplate.of(session, format, locale, items, log).format(arguments);
+    }
+}
@@ -0,0 +1,177 @@
+package org.codehaus.mojo.build;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.codehaus.plexus.util.FileUtils;
+import org.tmatesoft.svn.core.SVNDepth;
+import org.tmatesoft.svn.core.SVNException;
+import org.tmatesoft.svn.core.SVNURL;
+import org.tmatesoft.svn.core.internal.io.fs.FSRepositoryFactory;
+import org.tmatesoft.svn.core.io.SVNRepositoryFactory;
+import org.tmatesoft.svn.core.wc.SVNClientManager;
+import org.tmatesoft.svn.core.wc.SVNRevision;
+
+/**
+ * Creates local repositories of a given size for the benchmarks.
+ */
+final class GeneratedRepository {
+    private final File root;
+
+    private final File directory;
+
+    private final String scmUrl;
+
+    private GeneratedRepository(File root, File directory, String scmUrl) {
+        this.root = root;
+        this.directory = directory;
+        this.scmUrl = scmUrl;
+    }
+
+    private static GeneratedRepository create(String scmType) throws IOException {
+        File root = Files.createTempDirectory("bench-" + scmType).toFile();
+        return new GeneratedRepository(root, root, "scm:" + scmType + ":file://" + root.getAbsolutePath());
+    }
+
+    /**
+     * Create a Git repository in a new temporary directory.
+     *
+     * @param commits number of commits, at least 1
+     * @param files number of files in the working copy
+     * @param dirtyFiles number of files modified after the last commit
+     * @return the repository
+     */
+    static GeneratedRepository git(int commits, int files, int dirtyFiles) throws IOException, InterruptedException {
+        GeneratedRepository repository = create("git");
+        repository.run("git", "init", "-q");
+        repository.run("git", "config", "user.email", "bench@example.org");
+        repository.run("git", "config", "user.name", "bench");
+        repository.writeFiles(files, "initial");
+        repository.run("git", "add", "-A");
+        repository.run("git", "commit", "-q", "-m", "commit 0");
+        for (int i = 1; i < commits; i++) {
+            repository.writeFile(i % files, "commit " + i);
+            repository.run("git", "commit", "-q", "-a", "-m", "commit " + i);
+        }
+        repository.modifyFiles(dirtyFiles);
+        return repository;
+    }
+
+    /**
+     * Create a Mercurial repository in a new temporary directory, using the <code>hg</code> executable.
+     *
+     * @param commits number of commits, at least 1
+     * @param files number of files in the working copy
+     * @param dirtyFiles number of files modified after the last commit
+     * @return the repository
+     */
+    static GeneratedRepository hg(int commits, int files, int dirtyFiles) throws IOException, InterruptedException {
+        GeneratedRepository repository = create("hg");
+        repository.run("hg", "init");
+        repository.writeFiles(files, "initial");
+        repository.run("hg", "add", "-q");
+        repository.run("hg", "commit", "-q", "-u", "bench", "-m", "commit 0");
+        for (int i = 1; i < commits; i++) {
+            repository.writeFile(i % files, "commit " + i);
+            repository.run("hg", "commit", "-q", "-u", "bench", "-m", "commit " + i);
+        }
+        repository.modifyFiles(dirtyFiles);
+        return repository;
+    }
+
+    /**
+     * Create a Subversion repository and a checkout of it in a new temporary directory. This uses SVNKit, so no
+     * <code>svn</code> executable is needed to generate the repository.
+     *
+     * @param commits number of commits, at least 1
+     * @param files number of files in the working copy
+     * @param dirtyFiles number of files modified after the last commit
+     * @return the repository
+     */
+    static GeneratedRepository svn(int commits, int files, int dirtyFiles) throws IOException, SVNException {
+        FSRepositoryFactory.setup();
+        File root = Files.createTempDirectory("bench-svn").toFile();
+        SVNURL url = SVNRepositoryFactory.createLocalRepository(new File(root, "repository"), true, false);
+        GeneratedRepository repository =
+                new GeneratedRepository(root, new File(root, "checkout"), "scm:svn:" + url.toString());
+
+        SVNClientManager clientManager = SVNClientManager.newInstance();
+        try {
+            clientManager
+                    .getUpdateClient()
+                    .doCheckout(url, repository.directory, SVNRevision.HEAD, SVNRevision.HEAD, SVNDepth.INFINITY, false);
+            repository.writeFiles(files, "initial");
+            clientManager
+                    .getWCClient()
+                    .doAdd(repository.directory, true, false, false, SVNDepth.INFINITY, false, false);
+            File[] paths = {repository.directory};
+            clientManager.getCommitClient().doCommit(paths, false, "commit 0", null, null, false, false, SVNDepth.INFINITY);
+            for (int i = 1; i < commits; i++) {
+                repository.writeFile(i % files, "commit " + i);
+                clientManager
+                        .getCommitClient()
+                        .doCommit(paths, false, "commit " + i, null, null, false, false, SVNDepth.INFINITY);
+            }
+            // a fresh working copy is at a single revision
+            clientManager.getUpdateClient().doUpdate(repository.directory, SVNRevision.HEAD, SVNDepth.INFINITY, false, false);
+        } finally {
+            clientManager.dispose();
+        }
+        repository.modifyFiles(dirtyFiles);
+        return repository;
+    }
+
+    /**
+     * @return the working copy
+     */
+    File getDirectory() {
+        return directory;
+    }
+
+    /**
+     * @return the SCM connection url of the repository, e.g. <code>scm:git:file:///tmp/bench-git123</code>
+     */
+    String getScmUrl() {
+        return scmUrl;
+    }
+
+    void delete() throws IOException {
+        FileUtils.deleteDirectory(root);
+    }
+
+    void writeFiles(int count, String content) throws IOException {
+        for (int i = 0; i < count; i++) {
+            writeFile(i, content);
+        }
+    }
+
+    void modifyFiles(int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            writeFile(i, "modified");
+        }
+    }
+
+    private void writeFile(int index, String content) throws IOException {
+        // spread the files over a few directories like a real source tree
+        File file = new File(directory, "dir" + (index % 32) + "/file" + index + ".txt");
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), (content + "\n").getBytes(StandardCharsets.UTF_8));
+    }
+
+    void run(String... command) throws IOException, InterruptedException {
+        List<String> commandLine = new ArrayList<>(Arrays.asList(command));
+        Process process = new ProcessBuilder(commandLine)
+                .directory(directory)
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.INHERIT)
+                .start();
+        if (process.waitFor() != 0) {
+            throw new IOException("Command failed: " + commandLine);
+        }
+    }
+}
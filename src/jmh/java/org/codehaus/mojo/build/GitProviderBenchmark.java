@@ -0,0 +1,92 @@
+package org.codehaus.mojo.build;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.scm.ScmFile;
+import org.apache.maven.scm.manager.BasicScmManager;
+import org.apache.maven.scm.provider.ScmProvider;
+import org.apache.maven.scm.provider.git.gitexe.GitExeScmProvider;
+import org.apache.maven.scm.provider.git.jgit.JGitScmProvider;
+import org.apache.maven.settings.Settings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Compares the git executable with the in-process jgit provider for the queries of {@link CreateMojo}.
+ * <p>
+ * By default a repository is generated; set the <code>repository</code> parameter to benchmark an existing working
+ * copy, e.g. <code>-p repository=/path/to/large/checkout</code>.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GitProviderBenchmark {
+    @Param({"gitexe", "jgit"})
+    public String provider;
+
+    @Param({""})
+    public String repository;
+
+    @Param({"500"})
+    public int commits;
+
+    @Param({"20000"})
+    public int files;
+
+    private GeneratedRepository generated;
+
+    private CreateMojo mojo;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        File directory;
+        if (repository.isEmpty()) {
+            generated = GeneratedRepository.git(commits, files, 0);
+            directory = generated.getDirectory();
+        } else {
+            directory = new File(repository);
+        }
+
+        ScmProvider scmProvider = "jgit".equals(provider) ? new JGitScmProvider(null) : new GitExeScmProvider();
+        BasicScmManager scmManager = new BasicScmManager();
+        scmManager.setScmProvider("git", scmProvider);
+
+        mojo = new CreateMojo();
+        mojo.setScmManager(scmManager);
+        mojo.setUrlScm("scm:git:file://" + directory.getAbsolutePath());
+        mojo.setScmDirectory(directory);
+        mojo.settings = new Settings();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (generated != null) {
+            generated.delete();
+        }
+    }
+
+    @Benchmark
+    public String revision() throws Exception {
+        return mojo.getScmRevision();
+    }
+
+    @Benchmark
+    public String branch() throws Exception {
+        return mojo.getScmBranch();
+    }
+
+    @Benchmark
+    public List<ScmFile> status() throws Exception {
+        return mojo.getStatus();
+    }
+}
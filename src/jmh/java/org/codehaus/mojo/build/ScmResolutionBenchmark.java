@@ -0,0 +1,127 @@
+package org.codehaus.mojo.build;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.scm.ScmFile;
+import org.apache.maven.scm.manager.BasicScmManager;
+import org.apache.maven.scm.provider.ScmProvider;
+import org.apache.maven.scm.provider.git.gitexe.GitExeScmProvider;
+import org.apache.maven.scm.provider.git.jgit.JGitScmProvider;
+import org.apache.maven.scm.provider.hg.HgScmProvider;
+import org.apache.maven.scm.provider.svn.svnexe.SvnExeScmProvider;
+import org.apache.maven.scm.provider.svn.svnjava.SvnJavaScmProvider;
+import org.apache.maven.settings.Settings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the SCM queries of {@link CreateMojo} for every supported provider against generated local git, hg and
+ * svn (<code>file://</code>) repositories, e.g. to compare providers or to catch regressions:
+ *
+ * <pre>
+ * mvn -P jmh test-compile exec:exec -Djmh.args="ScmResolutionBenchmark -f 1 -p provider=gitexe,svnjava -p files=1000"
+ * </pre>
+ *
+ * The <code>hg</code> and <code>svnexe</code> providers need the <code>hg</code> and <code>svn</code> executables.
+ * With <code>readScmDirectory=false</code>, every query goes to the provider; with <code>true</code>, the git revision
+ * and branch and the hg branch are read from the <code>.git</code> and <code>.hg</code> directories as in a build.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class ScmResolutionBenchmark {
+    @Param({"gitexe", "jgit", "hg", "svnexe", "svnjava"})
+    public String provider;
+
+    @Param({"100"})
+    public int commits;
+
+    @Param({"1000", "20000"})
+    public int files;
+
+    @Param({"0", "100"})
+    public int dirtyFiles;
+
+    @Param({"false", "true"})
+    public boolean readScmDirectory;
+
+    private GeneratedRepository generated;
+
+    private CreateMojo mojo;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        String scmType;
+        ScmProvider scmProvider;
+        switch (provider) {
+            case "gitexe":
+                scmType = "git";
+                scmProvider = new GitExeScmProvider();
+                generated = GeneratedRepository.git(commits, files, dirtyFiles);
+                break;
+            case "jgit":
+                scmType = "git";
+                scmProvider = new JGitScmProvider(null);
+                generated = GeneratedRepository.git(commits, files, dirtyFiles);
+                break;
+            case "hg":
+                scmType = "hg";
+                scmProvider = new HgScmProvider();
+                generated = GeneratedRepository.hg(commits, files, dirtyFiles);
+                break;
+            case "svnexe":
+                scmType = "svn";
+                scmProvider = new SvnExeScmProvider();
+                generated = GeneratedRepository.svn(commits, files, dirtyFiles);
+                break;
+            case "svnjava":
+                scmType = "svn";
+                scmProvider = new SvnJavaScmProvider();
+                generated = GeneratedRepository.svn(commits, files, dirtyFiles);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown provider " + provider);
+        }
+
+        BasicScmManager scmManager = new BasicScmManager();
+        scmManager.setScmProvider(scmType, scmProvider);
+
+        mojo = new CreateMojo();
+        mojo.setScmManager(scmManager);
+        mojo.setUrlScm(generated.getScmUrl());
+        mojo.setScmDirectory(generated.getDirectory());
+        mojo.settings = new Settings();
+        mojo.readScmDirectory = readScmDirectory;
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        if (generated != null) {
+            generated.delete();
+        }
+    }
+
+    @Benchmark
+    public String revision() throws Exception {
+        return mojo.getScmRevision();
+    }
+
+    @Benchmark
+    public String branch() throws Exception {
+        return mojo.getScmBranch();
+    }
+
+    @Benchmark
+    public List<ScmFile> status() throws Exception {
+        return mojo.getStatus();
+    }
+}
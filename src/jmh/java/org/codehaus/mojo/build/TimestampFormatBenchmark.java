@@ -0,0 +1,76 @@
+package org.codehaus.mojo.build;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+
+/**
+ * Compares formatting the build timestamp with a new {@link SimpleDateFormat} for every call, as done before, with the
+ * cached formatters of {@link TimestampFormats} and the timestamp kept for the whole session.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class TimestampFormatBenchmark {
+    @Param({"yyyy-MM-dd'T'HH:mm:ss.SSSZ", "{0,date,yyyyMMddHHmm}"})
+    public String timestampFormat;
+
+    @Param({"UTC"})
+    public String timezone;
+
+    private final Log log = new SystemStreamLog();
+
+    private MavenSession session;
+
+    private Date now;
+
+    @Setup
+    @SuppressWarnings("deprecation")
+    public void setUp() {
+        session = new MavenSession(
+                null,
+                new DefaultRepositorySystemSession(),
+                new DefaultMavenExecutionRequest(),
+                new DefaultMavenExecutionResult());
+        now = new Date();
+    }
+
+    @Benchmark
+    public String simpleDateFormat() {
+        String pattern = timestampFormat;
+        if (pattern.matches("\\{0,date,[^\\}]+\\}")) {
+            pattern = pattern.replaceFirst("\\{0,date,([^\\}]+)\\}", "$1");
+        }
+        SimpleDateFormat dateFormat = new SimpleDateFormat(pattern);
+        dateFormat.setTimeZone(TimeZone.getTimeZone(timezone));
+        return dateFormat.format(now);
+    }
+
+    @Benchmark
+    public String cachedFormatter() {
+        String pattern = Utils.getMessageFormatDatePattern(timestampFormat);
+        return Utils.createTimestamp(pattern != null ? pattern : timestampFormat, timezone, now);
+    }
+
+    @Benchmark
+    public String sessionTimestamp() {
+        String pattern = Utils.getMessageFormatDatePattern(timestampFormat);
+        return Utils.createTimestamp(session, pattern != null ? pattern : timestampFormat, timezone, log);
+    }
+}
@@ -21,7 +21,9 @@ package org.codehaus.mojo.build;
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  */
 import java.io.File;
+import java.io.IOException;
 
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugins.annotations.Component;
 import org.apache.maven.plugins.annotations.Parameter;
@@ -35,6 +37,7 @@ import org.apache.maven.scm.ScmTag;
 import org.apache.maven.scm.command.info.InfoItem;
 import org.apache.maven.scm.command.info.InfoScmResult;
 import org.apache.maven.scm.manager.ScmManager;
+import org.apache.maven.scm.provider.ScmProvider;
 import org.apache.maven.scm.provider.ScmProviderRepository;
 import org.apache.maven.scm.provider.ScmProviderRepositoryWithHost;
 import org.apache.maven.scm.provider.git.repository.GitScmProviderRepository;
@@ -113,6 +116,21 @@ public abstract class AbstractScmMojo extends AbstractMojo {
     @Parameter(property = "maven.buildNumber.useLastCommittedRevision", defaultValue = "false")
     private boolean useLastCommittedRevision;
 
+    /**
+     * Read the git revision and branch and the Mercurial branch straight from the <code>.git</code> and
+     * <code>.hg</code> directories when possible, instead of asking the SCM provider.
+     * <p>
+     * This is the default since 3.3.1: for a git or Mercurial working copy these values no longer come from the
+     * provider, so neither a <code>git</code> or <code>hg</code> process nor the jgit provider is involved, and a
+     * failing provider no longer fails the build for them. The values are the same the provider reports; the
+     * provider is still asked whenever the directory cannot answer, e.g. for a short or last committed revision, a
+     * merge commit or a detached HEAD. Set to <code>false</code> to always ask the provider as before.
+     *
+     * @since 3.3.1
+     */
+    @Parameter(property = "maven.buildNumber.readScmDirectory", defaultValue = "true")
+    protected boolean readScmDirectory = true;
+
     /**
      * Whether to skip this execution.
      *
@@ -132,6 +150,9 @@ public abstract class AbstractScmMojo extends AbstractMojo {
     @Parameter(defaultValue = "${project}", required = true, readonly = true)
     protected MavenProject project;
 
+    @Parameter(defaultValue = "${session}", readonly = true, required = true)
+    protected MavenSession session;
+
     @Component
     protected ScmManager scmManager;
 
@@ -149,6 +170,26 @@ public abstract class AbstractScmMojo extends AbstractMojo {
     @Parameter(property = "maven.buildNumber.scmProvider", defaultValue = "git")
     private String scmProvider;
 
+    /**
+     * Keep the revision and the branch in {@link #scmStateCacheFile} between builds. They are reused without asking the
+     * SCM as long as the files git, Mercurial or Subversion rewrite on every commit, update or checkout keep their size
+     * and modification time. Local modifications are always checked.
+     *
+     * @since 3.3.1
+     */
+    @Parameter(property = "maven.buildNumber.useScmStateCache", defaultValue = "false")
+    private boolean useScmStateCache;
+
+    /**
+     * The file holding the SCM results between builds, see {@link #useScmStateCache}.
+     *
+     * @since 3.3.1
+     */
+    @Parameter(
+            property = "maven.buildNumber.scmStateCacheFile",
+            defaultValue = "${project.build.directory}/buildnumber/scm-state.properties")
+    private File scmStateCacheFile;
+
     /**
      * Maven Security Dispatcher
      *
@@ -189,10 +230,26 @@ public abstract class AbstractScmMojo extends AbstractMojo {
         }
     }
 
-    protected ScmRepository getScmRepository() throws ScmException {
+    private String getScmUrl() {
         String repoUrl = !StringUtils.isBlank(this.scmConnectionUrl) ? scmConnectionUrl : scmDeveloperConnectionUrl;
-        ScmRepository repository = scmManager.makeScmRepository(
-                StringUtils.isBlank(repoUrl) ? (ignoreEmptyScmUrl ? "scm:" + scmProvider + ":" : "") : repoUrl);
+        return StringUtils.isBlank(repoUrl) ? (ignoreEmptyScmUrl ? "scm:" + scmProvider + ":" : "") : repoUrl;
+    }
+
+    /**
+     * Get the SCM type of the configured connection url, e.g. <code>git</code>.
+     *
+     * @return the type or <code>null</code> if the url has none
+     */
+    protected String getScmType() {
+        return ScmCacheKey.getScmType(getScmUrl());
+    }
+
+    protected ScmRepository getScmRepository() throws ScmException {
+        return timed("repository", this::makeScmRepository);
+    }
+
+    private ScmRepository makeScmRepository() throws ScmException {
+        ScmRepository repository = scmManager.makeScmRepository(getScmUrl());
 
         ScmProviderRepository scmRepo = repository.getProviderRepository();
 
@@ -264,12 +321,123 @@ public abstract class AbstractScmMojo extends AbstractMojo {
             commandParameters.setScmVersion(CommandParameter.SCM_VERSION, new ScmTag(scmTag));
         }
 
-        return scmManager
-                .getProviderByRepository(repository)
-                .info(repository.getProviderRepository(), fileSet, commandParameters);
+        ScmProvider provider = scmManager.getProviderByRepository(repository);
+        BuildTimings.of(session, getLog()).providerCommand(provider);
+        return JfrEvents.scmCommand(
+                provider.getScmType(),
+                "info",
+                fileSet.getBasedir(),
+                () -> provider.info(repository.getProviderRepository(), fileSet, commandParameters));
+    }
+
+    /**
+     * @return the name of the goal in the timing report
+     */
+    String getGoal() {
+        return getClass().getSimpleName();
+    }
+
+    /**
+     * Run a step of this goal and record its time in the timing report of the session.
+     *
+     * @param step the step, e.g. <code>status</code>
+     * @param work the step
+     * @return the result of the step
+     * @throws E if the step fails
+     */
+    protected <T, E extends Exception> T timed(String step, SessionCache.Loader<T, E> work) throws E {
+        return BuildTimings.of(session, getLog()).time(getGoal(), step, work);
+    }
+
+    /**
+     * Get the key of a query about the working copy in {@link #scmDirectory}.
+     *
+     * @param query the name of the query
+     * @param wholeRepository whether the result is the same for every directory of the working copy
+     * @return the key
+     */
+    protected ScmCacheKey getScmCacheKey(String query, boolean wholeRepository) {
+        String scmType = getScmType();
+        File root = wholeRepository
+                ? ScmCacheKey.findRepositoryRoot(scmDirectory, scmType)
+                : ScmCacheKey.canonical(scmDirectory);
+        return new ScmCacheKey(query, root, scmType, scmTag, shortRevisionLength, useLastCommittedRevision);
+    }
+
+    /**
+     * Get a result from the cache shared by all executions in the current session, computing it on the first call.
+     *
+     * @param key the key of the query
+     * @param loader computes the result
+     * @return the result
+     * @throws E if the result has to be computed and that fails
+     */
+    protected <T, E extends Exception> T cached(ScmCacheKey key, SessionCache.Loader<T, E> loader) throws E {
+        return SessionCache.of(session).get(key, loader, getLog());
+    }
+
+    /**
+     * Like {@link #cached(ScmCacheKey, SessionCache.Loader)}, but also keep the result between builds if
+     * {@link #useScmStateCache} is enabled. Only use this for results which stay the same until the next commit,
+     * update or checkout.
+     *
+     * @param key the key of the query
+     * @param loader computes the result
+     * @param failureValue the result given when the SCM failed, which is not kept
+     * @return the result
+     * @throws E if the result has to be computed and that fails
+     */
+    protected <E extends Exception> String cachedBetweenBuilds(
+            ScmCacheKey key, SessionCache.Loader<String, E> loader, String failureValue) throws E {
+        return cached(key, () -> loadFromScmStateCache(key, loader, failureValue));
+    }
+
+    private <E extends Exception> String loadFromScmStateCache(
+            ScmCacheKey key, SessionCache.Loader<String, E> loader, String failureValue) throws E {
+        if (!useScmStateCache || scmStateCacheFile == null) {
+            return loader.load();
+        }
+        String fingerprint;
+        try {
+            fingerprint = ScmStateCache.fingerprint(scmDirectory, getScmType());
+        } catch (IOException e) {
+            getLog().debug("Cannot compute the state of the working copy: " + e.getLocalizedMessage());
+            fingerprint = null;
+        }
+        if (fingerprint == null) {
+            return loader.load();
+        }
+
+        String id = key.getId() + " " + getScmUrl();
+        ScmStateCache stateCache = ScmStateCache.load(scmStateCacheFile);
+        String value = stateCache.get(fingerprint, id);
+        if (value != null) {
+            getLog().debug("Read " + key + " from " + scmStateCacheFile);
+            return value;
+        }
+
+        value = loader.load();
+        if (value != null && !value.equals(failureValue)) {
+            try {
+                stateCache.put(fingerprint, id, value);
+            } catch (IOException e) {
+                getLog().warn("Cannot write " + scmStateCacheFile + ": " + e.getLocalizedMessage());
+            }
+        }
+        return value;
     }
 
     protected String getScmRevision() throws ScmException {
+        return cachedBetweenBuilds(
+                getScmCacheKey("revision", true), () -> timed("info", this::loadScmRevision), revisionOnScmFailure);
+    }
+
+    private String loadScmRevision() throws ScmException {
+        String gitRevision = readGitRevision();
+        if (gitRevision != null) {
+            return gitRevision;
+        }
+
         ScmRepository repository = getScmRepository();
 
         InfoScmResult scmResult = info(repository, new ScmFileSet(scmDirectory));
@@ -294,4 +462,39 @@ public abstract class AbstractScmMojo extends AbstractMojo {
 
         return info.getRevision();
     }
+
+    /**
+     * Read the revision straight from the <code>.git</code> directory. This gives the same result as the info command
+     * of the git provider, which reports the last commit that is not a merge. A short revision is left to the
+     * provider, as git makes it longer than <code>shortRevisionLength</code> when needed to keep it unique, and so is
+     * the last committed revision.
+     *
+     * @return the revision or <code>null</code> if the SCM provider has to be asked
+     */
+    private String readGitRevision() {
+        if (!readScmDirectory
+                || shortRevisionLength > 0
+                || useLastCommittedRevision
+                || !GitScmProviderRepository.PROTOCOL_GIT.equals(getScmType())
+                || !(StringUtils.isBlank(scmTag) || "HEAD".equals(scmTag))) {
+            return null;
+        }
+        try {
+            GitDirectory gitDirectory = GitDirectory.find(scmDirectory);
+            String head = gitDirectory != null ? gitDirectory.getHeadCommit() : null;
+            if (head == null) {
+                return null;
+            }
+            Integer parents = gitDirectory.getParentCount(head);
+            if (parents == null || parents > 1) {
+                // finding the last commit which is not a merge needs a walk through the history
+                return null;
+            }
+            getLog().debug("Read revision " + head + " from the git directory.");
+            return head;
+        } catch (IOException e) {
+            getLog().debug("Cannot read the git directory, asking the SCM provider: " + e.getLocalizedMessage());
+            return null;
+        }
+    }
 }
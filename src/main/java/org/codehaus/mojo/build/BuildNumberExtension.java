@@ -0,0 +1,166 @@
+package org.codehaus.mojo.build;
+
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2015 Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+import java.util.Map;
+
+import org.apache.maven.AbstractMavenLifecycleParticipant;
+import org.apache.maven.MavenExecutionException;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.lifecycle.LifecycleExecutor;
+import org.apache.maven.lifecycle.MavenExecutionPlan;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
+import org.apache.maven.monitor.logging.DefaultLog;
+import org.apache.maven.plugin.BuildPluginManager;
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.logging.Logger;
+
+/**
+ * Creates the build number once for the whole reactor if this plugin is loaded as core extension from
+ * <code>.mvn/extensions.xml</code>. After the projects are read and before any plugin runs, it executes the
+ * <code>create</code> goal once with the configuration of the top level project, and the goal puts the revision,
+ * branch, timestamp and tainted flag into the properties of every project of the reactor. The git status is queried
+ * in the background while the goal is prepared, see {@link ScmPrefetch}.
+ * <p>
+ * Only core extensions see the start of the session, so a plugin declared with
+ * <code>&lt;extensions&gt;true&lt;/extensions&gt;</code> in a POM does not do this.
+ */
+public class BuildNumberExtension extends AbstractMavenLifecycleParticipant {
+    static final String PLUGIN_GROUP_ID = "org.codehaus.mojo";
+
+    static final String PLUGIN_ARTIFACT_ID = "buildnumber-maven-plugin";
+
+    static final String GOAL = "create";
+
+    static final String EXECUTION_ID = "buildnumber-extension";
+
+    /**
+     * Marks a session started with this plugin as core extension.
+     */
+    private static final Object CORE_EXTENSION = BuildNumberExtension.class.getName() + " core extension";
+
+    private Logger logger;
+
+    private BuildPluginManager buildPluginManager;
+
+    private LifecycleExecutor lifecycleExecutor;
+
+    @Override
+    public void afterSessionStart(MavenSession session) {
+        SessionCache.of(session).get(CORE_EXTENSION, () -> Boolean.TRUE, getLog());
+    }
+
+    @Override
+    public void afterProjectsRead(MavenSession session) throws MavenExecutionException {
+        if (SessionCache.of(session).peek(CORE_EXTENSION) == null) {
+            return;
+        }
+
+        MavenProject topLevelProject = session.getTopLevelProject();
+        ScmPrefetch.start(session, topLevelProject, getLog());
+        Plugin plugin = getPlugin(topLevelProject, getClass().getPackage().getImplementationVersion());
+
+        getLog().info("Creating the build number for " + session.getProjects().size() + " projects");
+        MavenProject currentProject = session.getCurrentProject();
+        Thread thread = Thread.currentThread();
+        ClassLoader contextClassLoader = thread.getContextClassLoader();
+        try {
+            // the components of Maven are looked up from the context class realm, without one all of them are visible
+            thread.setContextClassLoader(null);
+            session.setCurrentProject(topLevelProject);
+            MavenExecutionPlan plan = lifecycleExecutor.calculateExecutionPlan(session, getTask(plugin));
+            for (MojoExecution execution : plan.getMojoExecutions()) {
+                setRevisionOnlyOnce(execution.getConfiguration());
+                buildPluginManager.executeMojo(session, execution);
+            }
+        } catch (Exception e) {
+            throw new MavenExecutionException("Cannot create the build number: " + e.getMessage(), e);
+        } finally {
+            session.setCurrentProject(currentProject);
+            thread.setContextClassLoader(contextClassLoader);
+        }
+    }
+
+    /**
+     * Get this plugin as declared by the project, so its version and configuration are used.
+     *
+     * @param project the top level project
+     * @param version the version to use if the project does not declare the plugin
+     * @return the plugin
+     */
+    static Plugin getPlugin(MavenProject project, String version) {
+        Map<String, Plugin> plugins = project.getBuild().getPluginsAsMap();
+        Plugin plugin = plugins.get(PLUGIN_GROUP_ID + ":" + PLUGIN_ARTIFACT_ID);
+        if (plugin == null) {
+            plugin = new Plugin();
+            plugin.setGroupId(PLUGIN_GROUP_ID);
+            plugin.setArtifactId(PLUGIN_ARTIFACT_ID);
+            plugin.setVersion(version);
+        }
+        return plugin;
+    }
+
+    /**
+     * Get the task running the <code>create</code> goal with the configuration of its first execution in the
+     * project, or else with the configuration of the plugin.
+     *
+     * @param plugin the plugin
+     * @return the task, e.g. <code>org.codehaus.mojo:buildnumber-maven-plugin:3.3.1:create@default</code>
+     */
+    static String getTask(Plugin plugin) {
+        String executionId = EXECUTION_ID;
+        for (PluginExecution pluginExecution : plugin.getExecutions()) {
+            if (pluginExecution.getGoals().contains(GOAL)) {
+                executionId = pluginExecution.getId();
+                break;
+            }
+        }
+        return plugin.getGroupId() + ":" + plugin.getArtifactId() + ":" + plugin.getVersion() + ":" + GOAL + "@"
+                + executionId;
+    }
+
+    /**
+     * Set <code>getRevisionOnlyOnce</code> in the given configuration, so the goal puts the properties into every
+     * project of the reactor.
+     * <p>
+     * The configuration is handled through reflection, since the class realm of a core extension sees the
+     * <code>Xpp3Dom</code> of the plexus-utils this plugin depends on instead of the one of Maven.
+     *
+     * @param configuration the configuration of the execution, an <code>Xpp3Dom</code> of Maven
+     * @throws ReflectiveOperationException if the configuration cannot be changed
+     */
+    static void setRevisionOnlyOnce(Object configuration) throws ReflectiveOperationException {
+        Class<?> dom = configuration.getClass();
+        Object child = dom.getMethod("getChild", String.class).invoke(configuration, "getRevisionOnlyOnce");
+        if (child == null) {
+            child = dom.getConstructor(String.class).newInstance("getRevisionOnlyOnce");
+            dom.getMethod("addChild", dom).invoke(configuration, child);
+        }
+        dom.getMethod("setValue", String.class).invoke(child, "true");
+    }
+
+    private Log getLog() {
+        return new DefaultLog(logger);
+    }
+}
@@ -0,0 +1,132 @@
+package org.codehaus.mojo.build;
+
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2015 Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * Hands out build numbers leased in blocks from an HTTP counter service, so builds on many machines get unique
+ * numbers without asking the service for every build.
+ * <p>
+ * A lease is requested with <code>POST &lt;url&gt;/&lt;counter&gt;?count=&lt;size&gt;</code>. The service answers
+ * with the first number of the block as plain text and must not hand out any number of the block again. The unused
+ * rest of a block is kept in a local lease file, shared by all builds on the machine, and used up before the next
+ * block is leased. So the numbers are unique across all machines, and increasing on each machine.
+ */
+final class BuildNumberService {
+    private static final int TIMEOUT_MILLIS = 10000;
+
+    private final String url;
+
+    private final int leaseSize;
+
+    private final File leaseFile;
+
+    /**
+     * @param url the url of the counter service, without trailing slash
+     * @param leaseSize how many numbers to lease at once
+     * @param leaseFile the local file keeping the leased numbers
+     */
+    BuildNumberService(String url, int leaseSize, File leaseFile) {
+        this.url = url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+        this.leaseSize = Math.max(1, leaseSize);
+        this.leaseFile = leaseFile;
+    }
+
+    /**
+     * Take the next number of the given counters, leasing a new block when the current one is used up. A key given
+     * more than once gets a new number for each occurrence.
+     *
+     * @param keys the counters
+     * @return the numbers, in the order of the keys
+     * @throws IOException if the lease file cannot be updated or the service fails
+     * @throws NumberFormatException if the lease file or the service holds something else than a number
+     */
+    int[] next(final List<String> keys) throws IOException {
+        return BuildNumberStore.update(leaseFile, properties -> {
+            int[] values = new int[keys.size()];
+            for (int i = 0; i < values.length; i++) {
+                values[i] = next(properties, keys.get(i));
+            }
+            return values;
+        });
+    }
+
+    private int next(Properties properties, String key) throws IOException {
+        String nextKey = url + '/' + key + ".next";
+        String lastKey = url + '/' + key + ".last";
+        String next = properties.getProperty(nextKey);
+        String last = properties.getProperty(lastKey);
+
+        int number;
+        if (next != null && last != null && BuildNumberStore.parse(next) <= BuildNumberStore.parse(last)) {
+            number = BuildNumberStore.parse(next);
+        } else {
+            number = lease(key);
+            properties.setProperty(lastKey, String.valueOf(number + leaseSize - 1));
+        }
+        properties.setProperty(nextKey, String.valueOf(number + 1));
+        return number;
+    }
+
+    /**
+     * @param key the counter
+     * @return the first number of a new block
+     * @throws IOException if the service cannot be reached or fails
+     */
+    int lease(String key) throws IOException {
+        URL leaseUrl = new URL(url + '/' + URLEncoder.encode(key, "UTF-8") + "?count=" + leaseSize);
+        HttpURLConnection connection = (HttpURLConnection) leaseUrl.openConnection();
+        try {
+            connection.setRequestMethod("POST");
+            connection.setConnectTimeout(TIMEOUT_MILLIS);
+            connection.setReadTimeout(TIMEOUT_MILLIS);
+
+            int status = connection.getResponseCode();
+            if (status != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Counter service " + leaseUrl + " answered with status " + status);
+            }
+            try (InputStream in = connection.getInputStream()) {
+                return BuildNumberStore.parse(read(in).trim());
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    private static String read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[64];
+        for (int n = in.read(buffer); n != -1; n = in.read(buffer)) {
+            out.write(buffer, 0, n);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
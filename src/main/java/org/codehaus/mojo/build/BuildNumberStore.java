@@ -0,0 +1,195 @@
+package org.codehaus.mojo.build;
+
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2015 Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Increments the build numbers kept in a properties file, safely shared by parallel builds in one JVM and by
+ * concurrent builds in other processes.
+ * <p>
+ * All counters of one request are read and incremented while holding an exclusive lock on a separate
+ * <code>.lock</code> file, and the new content replaces the properties file through a temporary file and an atomic
+ * rename. So no increment is lost, and readers never see a partly written file. The lock file is kept, since deleting
+ * it would let a waiting build lock a file nobody else sees. It lives in {@link #LOCK_DIRECTORY} under a name derived
+ * from the canonical path of the properties file, so it stays out of the sources, survives <code>mvn clean</code>,
+ * and every build of the same file locks the same lock file, whatever its build directory.
+ */
+final class BuildNumberStore {
+    private static final String COMMENT = "maven.buildNumber.plugin properties file";
+
+    /**
+     * A file lock is held by the whole JVM, so threads of one JVM have to take turns before locking the file.
+     */
+    private static final ConcurrentMap<String, ReentrantLock> LOCAL_LOCKS = new ConcurrentHashMap<>();
+
+    /**
+     * The directory of the lock files, shared by all builds of the user.
+     */
+    static final File LOCK_DIRECTORY = new File(System.getProperty("user.home"), ".m2/buildnumber/locks");
+
+    private BuildNumberStore() {}
+
+    /**
+     * Changes the content of a properties file.
+     *
+     * @param <T> the result of the change
+     */
+    interface Update<T> {
+        /**
+         * @param properties the current content, changed in place
+         * @return the result passed to the caller of {@link BuildNumberStore#update(File, File, Update)}
+         * @throws IOException if the change fails, the file is kept as it is
+         */
+        T apply(Properties properties) throws IOException;
+    }
+
+    /**
+     * Increment the given counters, starting at 1 for a counter which does not exist yet. A key given more than once
+     * is incremented once for each occurrence.
+     *
+     * @param file the properties file holding the counters
+     * @param keys the counters to increment
+     * @return the new value of each counter, in the order of the keys
+     * @throws IOException if the file cannot be read or written
+     * @throws NumberFormatException if a counter is not a number, with the stored value as message
+     */
+    static int[] increment(File file, final List<String> keys) throws IOException {
+        return update(file, properties -> {
+            int[] values = new int[keys.size()];
+            for (int i = 0; i < values.length; i++) {
+                String key = keys.get(i);
+                values[i] = parse(properties.getProperty(key, "0")) + 1;
+                properties.setProperty(key, String.valueOf(values[i]));
+            }
+            return values;
+        });
+    }
+
+    /**
+     * Read a properties file, change it and replace it with the result, all while holding the lock of the file.
+     *
+     * @param file the properties file, which need not exist yet
+     * @param update changes the content
+     * @return the result of the update
+     * @throws IOException if the file cannot be read or written or the update fails
+     */
+    static <T> T update(File file, Update<T> update) throws IOException {
+        Path path = file.getAbsoluteFile().toPath();
+        Files.createDirectories(path.getParent());
+        Path lockPath = getLockFile(file).toPath();
+        Files.createDirectories(lockPath.getParent());
+
+        ReentrantLock localLock =
+                LOCAL_LOCKS.computeIfAbsent(ScmCacheKey.canonical(path.toFile()).getPath(), p -> new ReentrantLock());
+        localLock.lock();
+        try (FileChannel lockChannel = FileChannel.open(lockPath, StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                FileLock ignored = lockChannel.lock()) {
+            Properties properties = new Properties();
+            if (Files.exists(path)) {
+                try (InputStream in = Files.newInputStream(path)) {
+                    properties.load(in);
+                }
+            }
+
+            T result = update.apply(properties);
+            write(properties, path);
+            return result;
+        } finally {
+            localLock.unlock();
+        }
+    }
+
+    /**
+     * Get the lock file of a properties file, which depends only on the canonical path of the properties file.
+     *
+     * @param file the properties file
+     * @return the lock file in {@link #LOCK_DIRECTORY}
+     */
+    static File getLockFile(File file) {
+        String canonicalPath = ScmCacheKey.canonical(file).getPath();
+        byte[] hash;
+        try {
+            hash = MessageDigest.getInstance("SHA-256").digest(canonicalPath.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            // every Java platform supports SHA-256
+            throw new IllegalStateException(e);
+        }
+        StringBuilder name = new StringBuilder(file.getName()).append('-');
+        for (int i = 0; i < 16; i++) {
+            name.append(String.format("%02x", hash[i]));
+        }
+        return new File(LOCK_DIRECTORY, name.append(".lock").toString());
+    }
+
+    /**
+     * @param value a stored counter
+     * @return the number
+     * @throws NumberFormatException if the value is not a number, with the value as message
+     */
+    static int parse(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            throw new NumberFormatException(value);
+        }
+    }
+
+    private static void write(Properties properties, Path path) throws IOException {
+        // not Files.createTempFile, its permissions would be kept by the move
+        Path temp = path.resolveSibling(path.getFileName() + "."
+                + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+        try {
+            try (FileChannel channel =
+                    FileChannel.open(temp, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+                properties.store(Channels.newOutputStream(channel), COMMENT);
+                // the content must be on disk before the rename makes it visible
+                channel.force(true);
+            }
+            try {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
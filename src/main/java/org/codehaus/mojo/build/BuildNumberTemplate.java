@@ -0,0 +1,248 @@
+package org.codehaus.mojo.build;
+
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2015 Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+import java.text.MessageFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+
+/**
+ * The <code>format</code>, <code>locale</code> and <code>items</code> of {@link CreateMojo}, parsed once and shared by
+ * all modules of a session using the same configuration.
+ */
+final class BuildNumberTemplate {
+    private static final Pattern NESTED_ARGUMENT = Pattern.compile("\\{\\s*(\\d+)");
+
+    /**
+     * The kind of an item.
+     */
+    enum Kind {
+        /** The time of the build. */
+        TIMESTAMP,
+        /** The SCM revision, for items starting with "scmVersion". */
+        SCM_VERSION,
+        /** A counter, for items starting with "buildNumber". */
+        BUILD_NUMBER,
+        /** Any other item, used as it is. */
+        VALUE
+    }
+
+    /**
+     * An item of the template.
+     */
+    static final class Item {
+        private final Kind kind;
+
+        private final Object value;
+
+        private final boolean used;
+
+        Item(Kind kind, Object value, boolean used) {
+            this.kind = kind;
+            this.value = value;
+            this.used = used;
+        }
+
+        Kind getKind() {
+            return kind;
+        }
+
+        /**
+         * @return the configured item, e.g. the key of a counter
+         */
+        Object getValue() {
+            return value;
+        }
+
+        /**
+         * @return whether the format refers to the item, so its value is needed
+         */
+        boolean isUsed() {
+            return used;
+        }
+    }
+
+    private final MessageFormat messageFormat;
+
+    private final List<Item> items;
+
+    private BuildNumberTemplate(MessageFormat messageFormat, List<Item> items) {
+        this.messageFormat = messageFormat;
+        this.items = items;
+    }
+
+    /**
+     * Get the template of the given configuration, compiling it on first use in the session.
+     *
+     * @param session the maven session, may be <code>null</code>
+     * @param format the java.text.MessageFormat pattern
+     * @param locale the locale name, may be <code>null</code> for the default locale
+     * @param items the items
+     * @param log the log
+     * @return the template
+     * @throws IllegalArgumentException if the format is invalid
+     */
+    static BuildNumberTemplate of(MavenSession session, String format, String locale, List<?> items, Log log) {
+        Locale resolvedLocale = parseLocale(locale);
+        return SessionCache.of(session)
+                .get(
+                        Arrays.asList(BuildNumberTemplate.class, format, resolvedLocale, items),
+                        () -> compile(format, resolvedLocale, items),
+                        log);
+    }
+
+    static BuildNumberTemplate compile(String format, Locale locale, List<?> items) {
+        MessageFormat messageFormat = new MessageFormat(format, locale);
+        BitSet used = getArgumentIndices(format);
+        List<Item> compiledItems = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            Object item = items.get(i);
+            compiledItems.add(new Item(getKind(item), item, used == null || used.get(i)));
+        }
+        return new BuildNumberTemplate(messageFormat, Collections.unmodifiableList(compiledItems));
+    }
+
+    /**
+     * Find the arguments a java.text.MessageFormat pattern refers to. Arguments in the sub formats of a choice format
+     * are included, as are any others which may be referred to, so no used argument is missed.
+     *
+     * @param pattern a valid pattern
+     * @return the indices of the arguments, or <code>null</code> if they are unknown
+     */
+    static BitSet getArgumentIndices(String pattern) {
+        BitSet indices = new BitSet();
+        boolean inQuote = false;
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                if (i + 1 < pattern.length() && pattern.charAt(i + 1) == '\'') {
+                    i++;
+                } else {
+                    inQuote = !inQuote;
+                }
+            } else if (c == '{' && !inQuote) {
+                int end = findArgumentEnd(pattern, i);
+                String argument = pattern.substring(i + 1, end);
+                int comma = argument.indexOf(',');
+                try {
+                    indices.set(Integer.parseInt((comma < 0 ? argument : argument.substring(0, comma)).trim()));
+                } catch (NumberFormatException e) {
+                    // not valid for MessageFormat either, assume every argument is used
+                    return null;
+                }
+                if (comma >= 0) {
+                    Matcher nested = NESTED_ARGUMENT.matcher(argument.substring(comma));
+                    while (nested.find()) {
+                        indices.set(Integer.parseInt(nested.group(1)));
+                    }
+                }
+                i = end;
+            }
+            i++;
+        }
+        return indices;
+    }
+
+    /**
+     * @param pattern the pattern
+     * @param start the index of the opening brace of an argument
+     * @return the index of its closing brace, or the end of the pattern
+     */
+    private static int findArgumentEnd(String pattern, int start) {
+        boolean inQuote = false;
+        int depth = 0;
+        for (int i = start + 1; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                inQuote = !inQuote;
+            } else if (!inQuote) {
+                if (c == '{') {
+                    depth++;
+                } else if (c == '}') {
+                    if (depth == 0) {
+                        return i;
+                    }
+                    depth--;
+                }
+            }
+        }
+        return pattern.length();
+    }
+
+    private static Kind getKind(Object item) {
+        if (item instanceof String) {
+            String s = (String) item;
+            if (s.equals("timestamp")) {
+                return Kind.TIMESTAMP;
+            } else if (s.startsWith("scmVersion")) {
+                return Kind.SCM_VERSION;
+            } else if (s.startsWith("buildNumber")) {
+                return Kind.BUILD_NUMBER;
+            }
+        }
+        return Kind.VALUE;
+    }
+
+    /**
+     * @param locale the name of a locale as given by {@link Locale#toString()}, may be <code>null</code>
+     * @return the locale, or the default locale if no name is given
+     */
+    static Locale parseLocale(String locale) {
+        if (locale == null) {
+            return Locale.getDefault();
+        }
+        String[] parts = locale.split("_", 3);
+        if (parts.length <= 1) {
+            return new Locale(locale);
+        } else if (parts.length == 2) {
+            return new Locale(parts[0], parts[1]);
+        } else {
+            return new Locale(parts[0], parts[1], parts[2]);
+        }
+    }
+
+    List<Item> getItems() {
+        return items;
+    }
+
+    /**
+     * Format the values of the items.
+     *
+     * @param arguments the values, in the order of the items
+     * @return the build number
+     */
+    String format(Object[] arguments) {
+        // a MessageFormat is not thread-safe, formatting is short enough to share one instead of copying it
+        synchronized (messageFormat) {
+            return messageFormat.format(arguments);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package org.codehaus.mojo.build;
+
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2015 Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.google.gson.stream.JsonWriter;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.scm.provider.ScmProvider;
+import org.apache.maven.scm.provider.git.gitexe.GitExeScmProvider;
+import org.apache.maven.scm.provider.hg.HgScmProvider;
+import org.apache.maven.scm.provider.svn.svnexe.SvnExeScmProvider;
+
+/**
+ * Records how long the steps of the goals of this plugin take and how many external processes they start, for all
+ * executions within one {@link MavenSession}. The report is written when the session ends.
+ */
+final class BuildTimings {
+    /**
+     * The name of the report in the build directory of the top level project.
+     */
+    static final String REPORT_NAME = "buildnumber-timings.json";
+
+    /**
+     * The step recorded for a whole execution of a goal.
+     */
+    static final String EXECUTION = "execution";
+
+    /**
+     * Processes started by this plugin in the session.
+     */
+    private final AtomicInteger processes = new AtomicInteger();
+
+    /**
+     * Goal to step to time, sorted for a stable report.
+     */
+    private final ConcurrentMap<String, ConcurrentMap<String, Step>> goals = new ConcurrentSkipListMap<>();
+
+    /**
+     * The accumulated time of one step.
+     */
+    static final class Step {
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder nanos = new LongAdder();
+
+        long getCount() {
+            return count.sum();
+        }
+
+        long getNanos() {
+            return nanos.sum();
+        }
+    }
+
+    /**
+     * Get the timings of the given session, creating them on first access. The first access also arranges for the
+     * report to be written when the session ends.
+     *
+     * @param session the maven session, may be <code>null</code>
+     * @param log used to report the creation at debug level and to log the summary at the end of the session
+     * @return the timings, never <code>null</code>
+     */
+    static BuildTimings of(MavenSession session, Log log) {
+        SessionCache cache = SessionCache.of(session);
+        BuildTimings timings = cache.peek(BuildTimings.class);
+        return timings != null ? timings : cache.get(BuildTimings.class, () -> create(session, log), log);
+    }
+
+    private static BuildTimings create(MavenSession session, Log log) {
+        BuildTimings timings = new BuildTimings();
+        if (!SessionListener.atSessionEnd(session, log, () -> report(session, log))) {
+            log.debug("Cannot report the build timings at the end of the session.");
+        }
+        return timings;
+    }
+
+    /**
+     * Get the timings of the given session without creating them.
+     *
+     * @param session the maven session
+     * @return the timings or <code>null</code> if no goal of this plugin ran
+     */
+    static BuildTimings peek(MavenSession session) {
+        return SessionCache.of(session).peek(BuildTimings.class);
+    }
+
+    /**
+     * Count an external process started by this plugin.
+     */
+    void processStarted() {
+        processes.incrementAndGet();
+    }
+
+    /**
+     * Count the process the given provider starts for a command, if it runs an executable.
+     *
+     * @param provider the provider about to run a command
+     */
+    void providerCommand(ScmProvider provider) {
+        if (provider instanceof GitExeScmProvider
+                || provider instanceof SvnExeScmProvider
+                || provider instanceof HgScmProvider) {
+            processStarted();
+        }
+    }
+
+    /**
+     * Run and time a step.
+     *
+     * @param goal the goal running the step, e.g. <code>create</code>
+     * @param step the step, e.g. <code>status</code>
+     * @param work the step
+     * @return the result of the step
+     * @throws E if the step fails, which is timed as well
+     */
+    <T, E extends Exception> T time(String goal, String step, SessionCache.Loader<T, E> work) throws E {
+        long start = System.nanoTime();
+        try {
+            return work.load();
+        } finally {
+            record(goal, step, System.nanoTime() - start);
+        }
+    }
+
+    void record(String goal, String step, long nanos) {
+        Step timing =
+                goals.computeIfAbsent(goal, g -> new ConcurrentSkipListMap<>()).computeIfAbsent(step, s -> new Step());
+        timing.count.increment();
+        timing.nanos.add(nanos);
+    }
+
+    Step getStep(String goal, String step) {
+        Map<String, Step> steps = goals.get(goal);
+        return steps != null ? steps.get(step) : null;
+    }
+
+    int getProcesses() {
+        return processes.get();
+    }
+
+    /**
+     * Render the report, e.g.
+     *
+     * <pre>
+     * {"processes":3,"goals":{"create":{"execution":{"count":2,"millis":41.2},"info":{"count":1,"millis":12.0}}}}
+     * </pre>
+     *
+     * @return the report
+     */
+    String toJson() {
+        StringWriter out = new StringWriter();
+        try (JsonWriter json = new JsonWriter(out)) {
+            json.setIndent("  ");
+            json.beginObject();
+            json.name("processes").value(getProcesses());
+            json.name("goals").beginObject();
+            for (Map.Entry<String, ConcurrentMap<String, Step>> goal : goals.entrySet()) {
+                json.name(goal.getKey()).beginObject();
+                for (Map.Entry<String, Step> step : goal.getValue().entrySet()) {
+                    json.name(step.getKey()).beginObject();
+                    json.name("count").value(step.getValue().getCount());
+                    json.name("millis").value(toMillis(step.getValue().getNanos()));
+                    json.endObject();
+                }
+                json.endObject();
+            }
+            json.endObject();
+            json.endObject();
+        } catch (IOException e) {
+            // cannot happen with a StringWriter
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+
+    /**
+     * Summarize the report in one line, e.g.
+     * <code>buildnumber: 12 executions in 340 ms (create 300 ms, create-metadata 40 ms), 3 processes</code>.
+     *
+     * @return the summary
+     */
+    String getSummary() {
+        long executions = 0;
+        long nanos = 0;
+        StringBuilder perGoal = new StringBuilder();
+        for (Map.Entry<String, ConcurrentMap<String, Step>> goal : goals.entrySet()) {
+            Step execution = goal.getValue().get(EXECUTION);
+            if (execution == null) {
+                continue;
+            }
+            executions += execution.getCount();
+            nanos += execution.getNanos();
+            perGoal.append(perGoal.length() == 0 ? "" : ", ")
+                    .append(goal.getKey())
+                    .append(' ')
+                    .append(TimeUnit.NANOSECONDS.toMillis(execution.getNanos()))
+                    .append(" ms");
+        }
+        return "buildnumber: " + executions + " executions in " + TimeUnit.NANOSECONDS.toMillis(nanos) + " ms ("
+                + perGoal + "), " + getProcesses() + " processes";
+    }
+
+    /**
+     * Write the report of the session to the build directory of the top level project and log the summary.
+     *
+     * @param session the maven session
+     * @param log receives the summary
+     */
+    static void report(MavenSession session, Log log) {
+        BuildTimings timings = peek(session);
+        if (timings == null) {
+            return;
+        }
+        File report = getReportFile(session);
+        try {
+            CreateMetadataMojo.writeIfChanged(timings.toJson().getBytes(StandardCharsets.UTF_8), report.toPath());
+            log.info(timings.getSummary() + ", see " + report);
+        } catch (IOException e) {
+            log.info(timings.getSummary());
+            log.warn("Cannot write " + report + ": " + e.getLocalizedMessage());
+        }
+    }
+
+    private static File getReportFile(MavenSession session) {
+        MavenProject topLevelProject = session.getTopLevelProject();
+        String directory = topLevelProject != null ? topLevelProject.getBuild().getDirectory() : null;
+        File buildDirectory =
+                directory != null ? new File(directory) : new File(session.getExecutionRootDirectory(), "target");
+        return new File(buildDirectory, REPORT_NAME);
+    }
+
+    private static double toMillis(long nanos) {
+        // one decimal is precise enough
+        return Math.round(nanos / 100_000.0) / 10.0;
+    }
+}
@@ -21,15 +21,24 @@ package org.codehaus.mojo.build;
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  */
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.TimeZone;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
 
 import org.apache.maven.model.Resource;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -53,6 +62,10 @@ import org.codehaus.plexus.util.StringUtils;
         requiresProject = true,
         threadSafe = true)
 public class CreateMetadataMojo extends AbstractScmMojo {
+    /**
+     * From this number of output files on, they are written in parallel.
+     */
+    static final int PARALLEL_WRITE_THRESHOLD = 8;
 
     /**
      * Application name
@@ -194,19 +207,39 @@ public class CreateMetadataMojo extends AbstractScmMojo {
             return;
         }
 
+        long start = System.nanoTime();
+        try {
+            createMetadata();
+        } finally {
+            BuildTimings.of(session, getLog()).record(getGoal(), BuildTimings.EXECUTION, System.nanoTime() - start);
+        }
+    }
+
+    @Override
+    String getGoal() {
+        return "create-metadata";
+    }
+
+    private void createMetadata() throws MojoExecutionException, MojoFailureException {
         Properties props = new Properties();
         props.put(this.applicationPropertyName, applicationName);
         props.put(this.versionPropertyName, version);
-        props.put(this.timestampPropertyName, Utils.createTimestamp(this.timestampFormat, timezone));
+        props.put(this.timestampPropertyName, Utils.createTimestamp(session, this.timestampFormat, timezone, getLog()));
         props.put(this.revisionPropertyName, this.getRevision());
         properties.entrySet().forEach(entry -> props.put(entry.getKey(), entry.getValue()));
 
         File outputFile = new File(outputDirectory, outputName);
         outputFiles.add(outputFile);
 
-        for (File file : outputFiles) {
-            file.getParentFile().mkdirs();
-            writeToFile(props, file);
+        Map<Path, byte[]> contents = render(props);
+        try {
+            int written = timed("write", () -> writeIfChanged(contents));
+            if (getLog().isDebugEnabled()) {
+                getLog().debug("Wrote " + written + " of " + contents.size()
+                        + " metadata files, the others are up to date");
+            }
+        } catch (UncheckedIOException e) {
+            throw new MojoFailureException(e.getMessage(), e.getCause());
         }
 
         if (attach) {
@@ -221,23 +254,95 @@ public class CreateMetadataMojo extends AbstractScmMojo {
         }
     }
 
-    private void writeToFile(Properties props, File file) throws MojoFailureException {
-        try {
-            if (this.autoDetectOutputFormat) {
-                OutputFormat outputFormat = OutputFormat.getOutputFormatFor(file.getName());
-                writeToFile(props, file, outputFormat);
-            } else {
-                writeToFile(props, file, OutputFormat.DEFAULT_FORMAT);
+    /**
+     * Render the properties once per output format.
+     *
+     * @param props the properties
+     * @return the content of each output file, in the order of the files
+     * @throws MojoFailureException if the properties cannot be rendered
+     */
+    private Map<Path, byte[]> render(Properties props) throws MojoFailureException {
+        Map<OutputFormat, byte[]> rendered = new IdentityHashMap<>();
+        Map<Path, byte[]> contents = new LinkedHashMap<>();
+        for (File file : outputFiles) {
+            OutputFormat outputFormat = this.autoDetectOutputFormat
+                    ? OutputFormat.getOutputFormatFor(file.getName())
+                    : OutputFormat.DEFAULT_FORMAT;
+            byte[] content = rendered.get(outputFormat);
+            if (content == null) {
+                Object event = JfrEvents.begin(JfrEvents.Type.OUTPUT_WRITE);
+                try {
+                    content = outputFormat.render(props);
+                } catch (IOException e) {
+                    throw new MojoFailureException("Unable to store output to " + file, e);
+                } finally {
+                    JfrEvents.commit(
+                            event,
+                            outputFormat.getClass().getSimpleName(),
+                            props.size(),
+                            content != null ? (long) content.length : 0L);
+                }
+                rendered.put(outputFormat, content);
             }
-        } catch (IOException e) {
-            throw new MojoFailureException("Unable to store output to " + file, e);
+            // a file listed twice is written once
+            contents.put(file.toPath().toAbsolutePath().normalize(), content);
+        }
+        return contents;
+    }
+
+    /**
+     * Write the contents to their files, in parallel when there are many of them.
+     *
+     * @param contents the content of each file
+     * @return the number of files written, the others were up to date
+     * @throws UncheckedIOException if a file cannot be written, with a message naming the file
+     */
+    static int writeIfChanged(Map<Path, byte[]> contents) {
+        Stream<Map.Entry<Path, byte[]>> entries = contents.entrySet().stream();
+        if (contents.size() >= PARALLEL_WRITE_THRESHOLD) {
+            entries = entries.parallel();
         }
+        return (int) entries.filter(entry -> {
+                    try {
+                        return writeIfChanged(entry.getValue(), entry.getKey());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Unable to store output to " + entry.getKey(), e);
+                    }
+                })
+                .count();
     }
 
-    private void writeToFile(Properties props, File file, OutputFormat outputFormat) throws IOException {
-        try (OutputStream out = new FileOutputStream(file)) {
-            outputFormat.write(props, out);
+    /**
+     * Write the content unless the file already has exactly this content, so its timestamp is kept and incremental
+     * builds do not see a change. The content is written to a temporary file next to the file and then moved over
+     * it, so readers never see a partially written file.
+     *
+     * @param content the new content of the file
+     * @param file the file to write
+     * @return <code>true</code> if the file was written, <code>false</code> if it was up to date
+     * @throws IOException if the file cannot be read or written
+     */
+    static boolean writeIfChanged(byte[] content, Path file) throws IOException {
+        if (Files.isRegularFile(file)
+                && Files.size(file) == content.length
+                && Arrays.equals(Files.readAllBytes(file), content)) {
+            return false;
+        }
+        Files.createDirectories(file.getParent());
+        // not Files.createTempFile, its permissions would be kept by the move
+        Path temp = file.resolveSibling(file.getFileName() + "."
+                + Long.toHexString(ThreadLocalRandom.current().nextLong()) + ".tmp");
+        try {
+            Files.write(temp, content, StandardOpenOption.CREATE_NEW);
+            try {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
         }
+        return true;
     }
 
     public String getRevision() throws MojoExecutionException {
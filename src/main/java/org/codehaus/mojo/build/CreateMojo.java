@@ -21,11 +21,10 @@ package org.codehaus.mojo.build;
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  */
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.text.MessageFormat;
-import java.util.Calendar;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Iterator;
@@ -33,10 +32,10 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.Properties;
+import java.util.Set;
 import java.util.TimeZone;
+import java.util.concurrent.Future;
 
-import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugin.MojoFailureException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
@@ -54,6 +53,7 @@ import org.apache.maven.scm.command.update.UpdateScmResult;
 import org.apache.maven.scm.command.update.UpdateScmResultWithRevision;
 import org.apache.maven.scm.manager.ScmManager;
 import org.apache.maven.scm.provider.ScmProvider;
+import org.apache.maven.scm.provider.git.gitexe.GitExeScmProvider;
 import org.apache.maven.scm.provider.git.gitexe.command.branch.GitBranchCommand;
 import org.apache.maven.scm.provider.git.repository.GitScmProviderRepository;
 import org.apache.maven.scm.provider.hg.HgScmProvider;
@@ -62,7 +62,6 @@ import org.apache.maven.scm.repository.ScmRepository;
 import org.codehaus.plexus.util.StringUtils;
 
 import static java.lang.Boolean.parseBoolean;
-import static java.lang.Integer.parseInt;
 
 /**
  * This mojo is designed to give you a build number. So when you might make 100 builds of version 1.0-SNAPSHOT, you can
@@ -151,17 +150,49 @@ public class CreateMojo extends AbstractScmMojo {
     private String format;
 
     /**
-     * Properties file to be created when "format" is not null and item has "buildNumber". See Usage for details
+     * Properties file to be created when "format" is not null and item has "buildNumber". See Usage for details. A
+     * <code>.lock</code> file in <code>~/.m2/buildnumber/locks</code> guards the counters against concurrent builds.
      *
      * @since 1.0-beta-2
      */
     @Parameter(defaultValue = "${basedir}/buildNumber.properties")
     private File buildNumberPropertiesFileLocation;
 
+    /**
+     * Url of an HTTP counter service to take the "buildNumber" items from instead of the properties file, so builds on
+     * several machines get unique numbers. Numbers are leased in blocks of {@link #buildNumberLeaseSize} with
+     * <code>POST &lt;url&gt;/&lt;item&gt;?count=&lt;size&gt;</code>, the service answers with the first number of the
+     * block. See Usage for details.
+     *
+     * @since 3.3.1
+     */
+    @Parameter(property = "maven.buildNumber.serviceUrl")
+    private String buildNumberServiceUrl;
+
+    /**
+     * How many numbers to lease at once from the {@link #buildNumberServiceUrl}. Numbers of a lease which are not used
+     * on this machine are lost.
+     *
+     * @since 3.3.1
+     */
+    @Parameter(property = "maven.buildNumber.leaseSize", defaultValue = "100")
+    private int buildNumberLeaseSize;
+
+    /**
+     * File keeping the numbers leased from the {@link #buildNumberServiceUrl}, shared by all builds on this machine.
+     *
+     * @since 3.3.1
+     */
+    @Parameter(
+            property = "maven.buildNumber.leaseFile",
+            defaultValue = "${user.home}/.m2/buildnumber/leases.properties")
+    private File buildNumberLeaseFile;
+
     /**
      * Specify the corresponding items for the format message, as specified by java.text.MessageFormat. Special item
      * values are "scmVersion", "timestamp" and "buildNumber[digits]", where [digits] are optional digits added to the
-     * end of the number to select a property.
+     * end of the number to select a property. Items the format does not refer to are skipped, so they neither query the
+     * SCM nor increment a build number.
      *
      * @since 1.0-beta-1
      */
@@ -197,6 +228,9 @@ public class CreateMojo extends AbstractScmMojo {
      * Selects alternative SCM provider implementations. Each map key denotes the original provider type as given in the
      * SCM URL like "cvs" or "svn", the map value specifies the provider type of the desired implementation to use
      * instead. In other words, this map configures a substitution mapping for SCM providers.
+     * <p>
+     * E.g. <code>&lt;git&gt;jgit&lt;/git&gt;</code> answers the revision and status queries in-process with JGit
+     * instead of starting <code>git</code> processes.
      *
      * @since 1.0-beta-3
      */
@@ -220,6 +254,84 @@ public class CreateMojo extends AbstractScmMojo {
     @Parameter(property = "maven.buildNumber.scmBranchPropertyName", defaultValue = "scmBranch")
     private String scmBranchPropertyName;
 
+    /**
+     * For git, get the local modifications and the branch with a single
+     * <code>git status --porcelain=v2 --branch</code> instead of separate commands. Requires git 2.11 or later;
+     * if the command fails, the SCM provider is asked as usual.
+     *
+     * @since 3.3.1
+     */
+    @Parameter(property = "maven.buildNumber.combinedGitStatus", defaultValue = "false")
+    private boolean combinedGitStatus;
+
+    /**
+     * For Mercurial, get the branch from a command server shared by all executions in the session, instead of starting
+     * a new <code>hg</code> process. See the <code>hgchangeset</code> goal.
+     *
+     * @since 3.3.1
+     */
+    @Parameter(property = "maven.buildNumber.useHgCommandServer", defaultValue = "false")
+    private boolean useHgCommandServer;
+
+    /**
+     * Only compute the {@link #scmBranchPropertyName branch} and {@link #buildTaintedPropertyName tainted} properties
+     * when a project of the reactor refers to them as <code>${name}</code> in its effective model, e.g. in a plugin
+     * configuration. Otherwise the SCM branch is not queried and, unless {@link #failTheBuild} is set, the local
+     * modifications are not checked, and the property is not set. Uses outside of the models, like scripts reading the
+     * project properties, are not found, hence this is disabled by default.
+     *
+     * @since 3.3.1
+     */
+    @Parameter(property = "maven.buildNumber.skipUnreferencedProperties", defaultValue = "false")
+    private boolean skipUnreferencedProperties;
+
+    /**
+     * With {@link #skipUnreferencedProperties}, also look for <code>${name}</code> and <code>@name@</code> in the files
+     * of filtered resource directories.
+     *
+     * @since 3.3.1
+     */
+    @Parameter(property = "maven.buildNumber.scanFilteredResources", defaultValue = "false")
+    private boolean scanFilteredResources;
+
+    /**
+     * Set the {@link #buildNumberPropertyName revision}, {@link #scmBranchPropertyName branch} and
+     * {@link #buildTaintedPropertyName tainted} properties only when a later goal of the project reading them starts,
+     * before its configuration is interpolated, instead of querying the SCM in this goal. A goal reads a property if
+     * its configuration refers to <code>${name}</code>; the resources goals of the maven-resources-plugin also read
+     * the properties their filtered resources refer to. Properties no goal reads are not computed, and goals reading
+     * the project properties in their code only see the ones read before. Each value is computed at most once for
+     * all modules sharing the same SCM settings, also in parallel builds. Only applies without a format, and when
+     * neither {@link #doUpdate} nor {@link #doCheck} with {@link #failTheBuild} are set, as these need the SCM right
+     * away.
+     * <p>
+     * A failing SCM query is logged by this goal and fails the build once it ends. The properties are only set in the
+     * project running this goal, not in the other projects of the reactor.
+     *
+     * @since 3.3.1
+     */
+    @Parameter(property = "maven.buildNumber.lazyProperties", defaultValue = "false")
+    private boolean lazyProperties;
+
+    /**
+     * The maximum number of changed files listed when the build fails because of local modifications. The check
+     * stops reading the status of git working copies once the limit is exceeded.
+     *
+     * @since 3.3.1
+     */
+    @Parameter(property = "maven.buildNumber.maxReportedModifications", defaultValue = "100")
+    private int maxReportedModifications;
+
+    /**
+     * Query the revision and the branch while checking for local modifications, instead of one after the other. They
+     * are still queried after an update if <code>doUpdate</code> is enabled. This runs up to three SCM commands at
+     * the same time, so it is disabled by default.
+     *
+     * @since 3.3.1
+     */
+    @Parameter(property = "maven.buildNumber.concurrentScmQueries", defaultValue = "false")
+    private boolean concurrentScmQueries;
+
     // ////////////////////////////////////// internal maven components ///////////////////////////////////
 
     /**
@@ -230,35 +342,75 @@ public class CreateMojo extends AbstractScmMojo {
     @Parameter(defaultValue = "${reactorProjects}", readonly = true, required = true)
     private List<MavenProject> reactorProjects;
 
-    @Parameter(defaultValue = "${session}", readonly = true, required = true)
-    private MavenSession session;
-
     // ////////////////////////////////////// internal variables ///////////////////////////////////
 
     private String revision;
 
     private boolean useScm;
 
-    public void execute() throws MojoExecutionException, MojoFailureException {
-        String buildIsTainted = "ok";
+    private Future<String> revisionQuery;
+
+    private final boolean[] revisionQueryFailed = new boolean[1];
+
+    private Future<String> branchQuery;
+
+    private final boolean[] branchQueryFailed = new boolean[1];
 
+    private Set<String> referencedProperties;
+
+    public void execute() throws MojoExecutionException, MojoFailureException {
         if (skip) {
             getLog().info("Skipping execution.");
             return;
         }
 
-        if (providerImplementations != null) {
-            changeProviderImplementation();
+        long start = System.nanoTime();
+        try {
+            if (providerImplementations != null) {
+                changeProviderImplementation();
+            }
+            Date now = Utils.getBuildTime(session, getLog());
+            try (ScmQueryExecutor queries = concurrentScmQueries ? ScmQueryExecutor.create(2) : null) {
+                createBuildNumber(now, queries);
+            }
+        } finally {
+            BuildTimings.of(session, getLog()).record(getGoal(), BuildTimings.EXECUTION, System.nanoTime() - start);
         }
-        Date now = Calendar.getInstance().getTime();
+    }
+
+    @Override
+    String getGoal() {
+        return "create";
+    }
+
+    private void createBuildNumber(Date now, ScmQueryExecutor queries) throws MojoExecutionException {
+        String buildIsTainted = "ok";
+        referencedProperties = null;
+        if (skipUnreferencedProperties && project != null) {
+            referencedProperties = PropertyReferences.find(
+                    session,
+                    reactorProjects != null ? reactorProjects : Collections.singletonList(project),
+                    Arrays.asList(scmBranchPropertyName, buildTaintedPropertyName),
+                    scanFilteredResources,
+                    getLog());
+        }
+
         if (format != null) {
             if (items == null) {
                 throw new MojoExecutionException(
                         " if you set a format, you must provide at least one item, " + "please check documentation ");
             }
-            Object[] itemAry = handleItems(now);
-
-            revision = format(itemAry);
+            BuildNumberTemplate template = BuildNumberTemplate.of(session, format, locale, items, getLog());
+            startScmQueries(queries, false);
+            Object[] itemAry = handleItems(template, now);
+
+            revision = template.format(itemAry);
+        } else if (lazyProperties
+                && project != null
+                && !(doUpdate && !session.getSettings().isOffline())
+                && !(doCheck && failTheBuild)) {
+            publishLazyProperties(now);
+            return;
         } else {
             // Check if the plugin has already run.
             revision = project.getProperties().getProperty(this.buildNumberPropertyName);
@@ -267,7 +419,15 @@ public class CreateMojo extends AbstractScmMojo {
                 return;
             }
 
-            if (doCheck) {
+            // read before the revision query may reset them
+            boolean checkLocalModifications = doCheck && (failTheBuild || isReferenced(buildTaintedPropertyName));
+            boolean updateFromScm = doUpdate && !session.getSettings().isOffline();
+            if (!updateFromScm) {
+                // the revision and branch do not depend on an update, query them while checking the status
+                startScmQueries(queries, true);
+            }
+
+            if (checkLocalModifications) {
                 StringBuilder message = new StringBuilder();
                 if (doLocalModificationExist(message)) {
                     buildIsTainted = "tainted";
@@ -283,7 +443,7 @@ public class CreateMojo extends AbstractScmMojo {
             if (session.getSettings().isOffline()) {
                 getLog().info("maven is executed in offline mode, Updating project files from SCM: skipped.");
             } else {
-                if (doUpdate) {
+                if (updateFromScm) {
                     // we update your local repo
                     // even after you commit, your revision stays the same until you update, thus this
                     // action
@@ -298,7 +458,7 @@ public class CreateMojo extends AbstractScmMojo {
                     getLog().debug("Updating project files from SCM: skipped.");
                 }
             }
-            revision = getRevision();
+            revision = revisionQuery != null ? getQueryResult(revisionQuery, revisionQueryFailed) : getRevision();
         }
 
         if (project != null) {
@@ -306,87 +466,180 @@ public class CreateMojo extends AbstractScmMojo {
         }
     }
 
-    private Object[] handleItems(Date now) throws MojoExecutionException {
+    /**
+     * Start the revision and branch queries in the background, if {@link #concurrentScmQueries} is enabled. The
+     * queries leave the fields alone, they only tell whether the SCM failed, see {@link #getQueryResult(Future,
+     * boolean[])}.
+     *
+     * @param queries the executor or <code>null</code> if disabled
+     * @param withRevision whether to query the revision, too
+     */
+    private void startScmQueries(ScmQueryExecutor queries, boolean withRevision) {
+        if (queries == null) {
+            return;
+        }
+        if (withRevision) {
+            revisionQuery = queries.submit(() -> queryRevision(revisionQueryFailed));
+        }
+        // with combinedGitStatus, the branch comes with the status
+        if (project != null && !combinedGitStatus && isReferenced(scmBranchPropertyName)) {
+            branchQuery = queries.submit(() -> queryScmBranch(branchQueryFailed));
+        }
+    }
+
+    /**
+     * Wait for a query started by {@link #startScmQueries(ScmQueryExecutor, boolean)} and apply what it found on
+     * this thread.
+     *
+     * @param query the query
+     * @param scmFailed set by the query if the SCM failed and <code>revisionOnScmFailure</code> was used
+     * @return the result of the query
+     * @throws MojoExecutionException if the query failed
+     */
+    private String getQueryResult(Future<String> query, boolean[] scmFailed) throws MojoExecutionException {
+        String result = ScmQueryExecutor.get(query);
+        // Future.get() makes the write of the query visible here
+        if (scmFailed[0]) {
+            skipCheckAndUpdate();
+        }
+        return result;
+    }
+
+    private Object[] handleItems(BuildNumberTemplate template, Date now) throws MojoExecutionException {
         // needs to be an array
         // look for special values
-        Object[] itemAry = new Object[items.size()];
-        for (int i = 0; i < items.size(); i++) {
-            Object item = items.get(i);
-            if (item instanceof String) {
-                String s = (String) item;
-                if (s.equals("timestamp")) {
+        List<BuildNumberTemplate.Item> templateItems = template.getItems();
+        Object[] itemAry = new Object[templateItems.size()];
+        List<Integer> counterIndices = new ArrayList<>();
+        List<String> counterKeys = new ArrayList<>();
+        String scmVersion = null;
+        boolean scmVersionResolved = false;
+        for (int i = 0; i < itemAry.length; i++) {
+            BuildNumberTemplate.Item item = templateItems.get(i);
+            if (!item.isUsed()) {
+                // neither ask the SCM nor increment a counter for an item the format does not show
+                getLog().debug("Item " + i + " (" + item.getValue() + ") is not used by the format, skipped.");
+                continue;
+            }
+            switch (item.getKind()) {
+                case TIMESTAMP:
                     itemAry[i] = now;
-                } else if (s.startsWith("scmVersion")) {
-                    useScm = true;
-                    itemAry[i] = getRevision();
-                } else if (s.startsWith("buildNumber")) {
-                    // check for properties file
-                    File propertiesFile = this.buildNumberPropertiesFileLocation;
-
-                    createPropertiesFileIfNotExists(propertiesFile);
-
-                    Properties properties = new Properties();
-                    String buildNumberString = null;
-                    try (FileInputStream inputStream = new FileInputStream(propertiesFile)) {
-                        // get the number for the buildNumber specified
-                        properties.load(inputStream);
-                        buildNumberString = properties.getProperty(s);
-                        if (buildNumberString == null) {
-                            buildNumberString = "0";
-                        }
-                        int buildNumber = parseInt(buildNumberString);
-
-                        // store the increment
-                        properties.setProperty(s, String.valueOf(++buildNumber));
-                        try (FileOutputStream outputStream = new FileOutputStream(propertiesFile)) {
-                            properties.store(outputStream, "maven.buildNumber.plugin properties file");
-                        }
-
-                        // use in the message (format)
-                        itemAry[i] = buildNumber;
-                    } catch (NumberFormatException e) {
-                        throw new MojoExecutionException(
-                                "Couldn't parse buildNumber in properties file to an Integer: " + buildNumberString);
-                    } catch (IOException e) {
-                        throw new MojoExecutionException("Couldn't load properties file: " + propertiesFile, e);
+                    break;
+                case SCM_VERSION:
+                    if (!scmVersionResolved) {
+                        useScm = true;
+                        scmVersion = getRevision();
+                        scmVersionResolved = true;
                     }
-                } else {
-                    itemAry[i] = item;
-                }
-            } else {
-                itemAry[i] = item;
+                    itemAry[i] = scmVersion;
+                    break;
+                case BUILD_NUMBER:
+                    // incremented below, all counters in one go
+                    counterIndices.add(i);
+                    counterKeys.add((String) item.getValue());
+                    break;
+                default:
+                    itemAry[i] = item.getValue();
             }
         }
-        return itemAry;
-    }
 
-    private void createPropertiesFileIfNotExists(File propertiesFile) throws MojoExecutionException {
-        // create if not exists
-        if (!propertiesFile.exists()) {
+        if (!counterKeys.isEmpty()) {
+            File propertiesFile =
+                    buildNumberServiceUrl != null ? buildNumberLeaseFile : buildNumberPropertiesFileLocation;
+            Object event = JfrEvents.begin(JfrEvents.Type.COUNTER_IO);
             try {
-                if (!propertiesFile.getParentFile().exists()) {
-                    propertiesFile.getParentFile().mkdirs();
+                int[] buildNumbers = timed(
+                        "counter",
+                        () -> buildNumberServiceUrl != null
+                                ? new BuildNumberService(buildNumberServiceUrl, buildNumberLeaseSize, propertiesFile)
+                                        .next(counterKeys)
+                                : BuildNumberStore.increment(propertiesFile, counterKeys));
+                for (int i = 0; i < buildNumbers.length; i++) {
+                    // use in the message (format)
+                    itemAry[counterIndices.get(i)] = buildNumbers[i];
                 }
-                propertiesFile.createNewFile();
+            } catch (NumberFormatException e) {
+                throw new MojoExecutionException(
+                        "Couldn't parse buildNumber in properties file to an Integer: " + e.getMessage());
             } catch (IOException e) {
-                throw new MojoExecutionException("Couldn't create properties file: " + propertiesFile, e);
+                if (buildNumberServiceUrl != null) {
+                    throw new MojoExecutionException(
+                            "Couldn't lease build numbers from " + buildNumberServiceUrl + ": " + e.getMessage(), e);
+                }
+                throw new MojoExecutionException("Couldn't load properties file: " + propertiesFile, e);
+            } finally {
+                JfrEvents.commit(
+                        event,
+                        buildNumberServiceUrl != null ? "lease" : "increment",
+                        String.valueOf(propertiesFile),
+                        String.join(",", counterKeys));
             }
         }
+        return itemAry;
     }
 
-    private void buildNumberAndTimeStampForReactorProjects(Date now, String taintedValue)
-            throws MojoExecutionException {
+    /**
+     * Set the revision, branch and tainted properties of the project to values which are computed when they are first
+     * read, see {@link #lazyProperties}. The project keeps its properties, the values are copied into them before
+     * the first goal reading them starts.
+     *
+     * @param now the time of the build
+     * @throws MojoExecutionException if there is no session to listen to and a value cannot be computed right away
+     */
+    private void publishLazyProperties(Date now) throws MojoExecutionException {
+        LazyProperties properties = LazyProperties.of(session, project, getLog());
+        if (getRevisionOnlyOnce && properties.isSet(buildNumberPropertyName)) {
+            getLog().debug("Revision available from previous execution");
+            return;
+        }
+
+        properties.putDeferred(buildNumberPropertyName, deferred("revision", true, this::getRevision));
+        properties.putDeferred(scmBranchPropertyName, deferred("branch", true, this::getScmBranch));
+        if (doCheck) {
+            properties.putDeferred(
+                    buildTaintedPropertyName,
+                    deferred("tainted", false, () -> doLocalModificationExist(new StringBuilder()) ? "tainted" : "ok"));
+        } else {
+            project.getProperties().put(buildTaintedPropertyName, "ok");
+        }
+
+        String timestamp = createTimestamp(now);
+        project.getProperties().put(timestampPropertyName, timestamp);
+        getLog().info(MessageFormat.format(
+                "Storing {0}, {1} and {2} to be computed on first use, at timestamp: {3}",
+                buildNumberPropertyName, scmBranchPropertyName, buildTaintedPropertyName, timestamp));
+    }
+
+    /**
+     * Get the deferred value of an SCM query, shared by all modules with the same SCM settings.
+     */
+    private LazyProperties.Deferred deferred(
+            String query, boolean wholeRepository, LazyProperties.Computation computation) {
+        return SessionCache.of(session)
+                .get(
+                        Arrays.asList(LazyProperties.class, getScmCacheKey(query, wholeRepository)),
+                        () -> new LazyProperties.Deferred(computation),
+                        getLog());
+    }
+
+    private String createTimestamp(Date now) {
         String timestamp = String.valueOf(now.getTime());
         if (timestampFormat != null) {
-            if (timestampFormat.matches("\\{0,date,[^\\}]+\\}")) {
+            String datePattern = Utils.getMessageFormatDatePattern(timestampFormat);
+            if (datePattern != null) {
                 getLog().warn("The timestampFormat parameter now uses java.text.SimpleDateFormat.");
                 getLog().warn("Please update your POM as support for java.text.MessageFormat may be removed.");
-                timestamp = Utils.createTimestamp(
-                        timestampFormat.replaceFirst("\\{0,date,([^\\}]+)\\}", "$1"), timezone, now);
+                timestamp = Utils.createTimestamp(session, datePattern, timezone, now, getLog());
             } else {
-                timestamp = Utils.createTimestamp(timestampFormat, timezone, now);
+                timestamp = Utils.createTimestamp(session, timestampFormat, timezone, now, getLog());
             }
         }
+        return timestamp;
+    }
+
+    private void buildNumberAndTimeStampForReactorProjects(Date now, String taintedValue)
+            throws MojoExecutionException {
+        String timestamp = createTimestamp(now);
 
         getLog().info(MessageFormat.format("Storing buildNumber: {0} at timestamp: {1}", revision, timestamp));
         if (revision != null) {
@@ -394,9 +647,14 @@ public class CreateMojo extends AbstractScmMojo {
         }
         project.getProperties().put(timestampPropertyName, timestamp);
 
-        String scmBranch = getScmBranch();
-        getLog().info("Storing scmBranch: " + scmBranch);
-        project.getProperties().put(scmBranchPropertyName, scmBranch);
+        String scmBranch = null;
+        if (isReferenced(scmBranchPropertyName)) {
+            scmBranch = branchQuery != null ? getQueryResult(branchQuery, branchQueryFailed) : getScmBranch();
+            getLog().info("Storing scmBranch: " + scmBranch);
+            project.getProperties().put(scmBranchPropertyName, scmBranch);
+        } else {
+            getLog().debug("Property " + scmBranchPropertyName + " is not referenced, querying the branch: skipped.");
+        }
 
         // Add the revision and timestamp properties to each project in the reactor
         if (getRevisionOnlyOnce && reactorProjects != null) {
@@ -407,12 +665,25 @@ public class CreateMojo extends AbstractScmMojo {
                     nextProj.getProperties().put(this.buildNumberPropertyName, revision);
                 }
                 nextProj.getProperties().put(this.timestampPropertyName, timestamp);
-                nextProj.getProperties().put(this.scmBranchPropertyName, scmBranch);
-                nextProj.getProperties().put(this.buildTaintedPropertyName, taintedValue);
+                if (scmBranch != null) {
+                    nextProj.getProperties().put(this.scmBranchPropertyName, scmBranch);
+                }
+                if (isReferenced(buildTaintedPropertyName)) {
+                    nextProj.getProperties().put(this.buildTaintedPropertyName, taintedValue);
+                }
             }
         }
     }
 
+    /**
+     * @param propertyName the name of a property
+     * @return whether the property has to be computed, which is always the case unless
+     *     {@link #skipUnreferencedProperties} is enabled
+     */
+    private boolean isReferenced(String propertyName) {
+        return referencedProperties == null || referencedProperties.contains(propertyName);
+    }
+
     private void changeProviderImplementation() {
         for (Entry<String, String> entry : providerImplementations.entrySet()) {
             String providerType = entry.getKey();
@@ -423,60 +694,66 @@ public class CreateMojo extends AbstractScmMojo {
         }
     }
 
-    /**
-     * Formats the given argument using the configured format template and locale.
-     *
-     * @param arguments arguments to be formatted @ @return formatted result
-     */
-    private String format(Object[] arguments) {
-        Locale l = Locale.getDefault();
-        if (locale != null) {
-            String[] parts = locale.split("_", 3);
-            if (parts.length <= 1) {
-                l = new Locale(locale);
-            } else if (parts.length == 2) {
-                l = new Locale(parts[0], parts[1]);
-            } else {
-                l = new Locale(parts[0], parts[1], parts[2]);
-            }
-        }
-
-        return new MessageFormat(format, l).format(arguments);
-    }
-
     private boolean doLocalModificationExist(StringBuilder message) throws MojoExecutionException {
-        boolean result = false;
-
         getLog().debug("Verifying there are no local modifications ...");
 
+        int maxChangedFiles = getMaxChangedFiles();
         List<ScmFile> changedFiles;
+        boolean moreChanges;
 
         try {
-            changedFiles = getStatus();
+            GitStatus gitStatus = timed("status", () -> getGitStatus(maxChangedFiles));
+            if (gitStatus != null) {
+                changedFiles = gitStatus.getChangedFiles();
+                moreChanges = gitStatus.hasMoreChanges();
+            } else {
+                changedFiles = getStatus();
+                moreChanges = changedFiles.size() > maxChangedFiles;
+                if (moreChanges) {
+                    changedFiles = changedFiles.subList(0, maxChangedFiles);
+                }
+            }
         } catch (ScmException e) {
             throw new MojoExecutionException("An error has occurred while checking scm status.", e);
         }
 
-        if (!changedFiles.isEmpty()) {
-            for (ScmFile file : changedFiles) {
-                message.append(file.toString());
+        for (ScmFile file : changedFiles) {
+            message.append(file.toString());
 
-                message.append(System.lineSeparator());
-            }
+            message.append(System.lineSeparator());
+        }
+        if (moreChanges) {
+            message.append("...");
 
-            result = true;
+            message.append(System.lineSeparator());
         }
 
-        return result;
+        return !changedFiles.isEmpty() || moreChanges;
+    }
+
+    /**
+     * @return the number of changed files to report, none if the build goes on anyway
+     */
+    private int getMaxChangedFiles() {
+        return failTheBuild ? Math.max(0, maxReportedModifications) : 0;
     }
 
     public List<ScmFile> update() throws MojoExecutionException {
+        return timed("update", this::runUpdate);
+    }
+
+    private List<ScmFile> runUpdate() throws MojoExecutionException {
         try {
             ScmRepository repository = getScmRepository();
 
             ScmProvider scmProvider = scmManager.getProviderByRepository(repository);
 
-            UpdateScmResult result = scmProvider.update(repository, new ScmFileSet(scmDirectory));
+            BuildTimings.of(session, getLog()).providerCommand(scmProvider);
+            UpdateScmResult result = JfrEvents.scmCommand(
+                    scmProvider.getScmType(),
+                    "update",
+                    scmDirectory,
+                    () -> scmProvider.update(repository, new ScmFileSet(scmDirectory)));
 
             if (result == null) {
                 return Collections.emptyList();
@@ -497,12 +774,26 @@ public class CreateMojo extends AbstractScmMojo {
     }
 
     public List<ScmFile> getStatus() throws ScmException {
+        // the status is reported for the given directory only
+        return cached(getScmCacheKey("status", false), () -> timed("status", this::loadStatus));
+    }
+
+    private List<ScmFile> loadStatus() throws ScmException {
+        GitStatus gitStatus = combinedGitStatus ? getGitStatus(Integer.MAX_VALUE) : null;
+        if (gitStatus != null) {
+            return gitStatus.getChangedFiles();
+        }
 
         ScmRepository repository = getScmRepository();
 
         ScmProvider scmProvider = scmManager.getProviderByRepository(repository);
 
-        StatusScmResult result = scmProvider.status(repository, new ScmFileSet(scmDirectory));
+        BuildTimings.of(session, getLog()).providerCommand(scmProvider);
+        StatusScmResult result = JfrEvents.scmCommand(
+                scmProvider.getScmType(),
+                "status",
+                scmDirectory,
+                () -> scmProvider.status(repository, new ScmFileSet(scmDirectory)));
 
         if (result == null) {
             return Collections.emptyList();
@@ -521,18 +812,67 @@ public class CreateMojo extends AbstractScmMojo {
      * @throws MojoExecutionException
      */
     public String getScmBranch() throws MojoExecutionException {
+        boolean[] scmFailed = new boolean[1];
+        String branch = queryScmBranch(scmFailed);
+        if (scmFailed[0]) {
+            skipCheckAndUpdate();
+        }
+        return branch;
+    }
+
+    private String queryScmBranch(boolean[] scmFailed) throws MojoExecutionException {
+        return cachedBetweenBuilds(
+                getScmCacheKey("branch", true),
+                () -> timed("branch", () -> loadScmBranch(scmFailed)),
+                DEFAULT_BRANCH_NAME);
+    }
+
+    private String loadScmBranch(boolean[] scmFailed) throws MojoExecutionException {
+        String gitBranch = readGitBranch();
+        if (gitBranch != null) {
+            return gitBranch;
+        }
+
+        String hgBranch = readHgBranch();
+        if (hgBranch != null) {
+            return hgBranch;
+        }
+
+        // the branch comes first, so the status stopped after the reported files has it, too
+        GitStatus gitStatus = combinedGitStatus ? getGitStatus(getMaxChangedFiles()) : null;
+        if (gitStatus != null && gitStatus.getBranch() != null) {
+            getLog().debug("Read branch " + gitStatus.getBranch() + " from git status.");
+            return gitStatus.getBranch();
+        }
+
         try {
             ScmRepository repository = getScmRepository();
             ScmProvider provider = scmManager.getProviderByRepository(repository);
             /* git branch can be obtained directly by a command */
             if (GitScmProviderRepository.PROTOCOL_GIT.equals(provider.getScmType())) {
                 ScmFileSet fileSet = new ScmFileSet(scmDirectory);
-                return GitBranchCommand.getCurrentBranch(
-                        (GitScmProviderRepository) repository.getProviderRepository(), fileSet);
+                BuildTimings.of(session, getLog()).processStarted();
+                Object event = JfrEvents.begin(JfrEvents.Type.SCM_COMMAND);
+                int exitStatus = -1;
+                try {
+                    String branch = GitBranchCommand.getCurrentBranch(
+                            (GitScmProviderRepository) repository.getProviderRepository(), fileSet);
+                    exitStatus = 0;
+                    return branch;
+                } finally {
+                    JfrEvents.commit(event, "git", "symbolic-ref HEAD", String.valueOf(scmDirectory), exitStatus, 0L);
+                }
             } else if (provider instanceof HgScmProvider) {
                 /* hg branch can be obtained directly by a command */
                 HgOutputConsumer consumer = new HgOutputConsumer();
-                ScmResult result = HgUtils.execute(consumer, scmDirectory, new String[] {"id", "-b"});
+                String[] command = {"id", "-b"};
+                ScmResult result = JfrEvents.scmCommand("hg", "id -b", scmDirectory, () -> {
+                    if (useHgCommandServer) {
+                        return HgCommandServers.execute(session, getLog(), scmDirectory, consumer, command);
+                    }
+                    BuildTimings.of(session, getLog()).processStarted();
+                    return HgUtils.execute(consumer, scmDirectory, command);
+                });
                 checkResult(result);
                 if (StringUtils.isNotEmpty(consumer.getOutput())) {
                     return consumer.getOutput();
@@ -542,10 +882,88 @@ public class CreateMojo extends AbstractScmMojo {
             getLog().warn("Cannot get the branch information from the git repository: \n" + e.getLocalizedMessage());
         }
 
-        return getScmBranchFromUrl();
+        return getScmBranchFromUrl(scmFailed);
+    }
+
+    /**
+     * Run <code>git status --porcelain=v2 --branch</code> once for {@link #scmDirectory}, if the git command line is
+     * used. It streams the output and stops after the given number of changed files, instead of collecting the whole
+     * output like the git provider. With {@link #combinedGitStatus}, the status and branch queries share the result.
+     * A status prefetched by the core extension is used instead, see {@link ScmPrefetch}.
+     *
+     * @param maxChangedFiles the maximum number of changed files to keep
+     * @return the status or <code>null</code> if the SCM provider has to be asked
+     */
+    private GitStatus getGitStatus(int maxChangedFiles) {
+        if (!GitScmProviderRepository.PROTOCOL_GIT.equals(getScmType())) {
+            return null;
+        }
+        try {
+            if (!(scmManager.getProviderByRepository(getScmRepository()) instanceof GitExeScmProvider)) {
+                return null;
+            }
+            return cached(getScmCacheKey("porcelain status of " + maxChangedFiles + " files", false), () -> {
+                // the update changes the working copy after the prefetch
+                GitStatus prefetched =
+                        doUpdate ? null : ScmPrefetch.getGitStatus(session, scmDirectory, maxChangedFiles);
+                if (prefetched != null) {
+                    return prefetched;
+                }
+                BuildTimings.of(session, getLog()).processStarted();
+                return GitStatus.query(scmDirectory, maxChangedFiles);
+            });
+        } catch (ScmException e) {
+            getLog().debug("Cannot run git status, asking the SCM provider: " + e.getLocalizedMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Read the current branch straight from the <code>.git</code> directory.
+     *
+     * @return the branch or <code>null</code> if the SCM provider has to be asked, e.g. for a detached HEAD
+     */
+    private String readGitBranch() {
+        if (!readScmDirectory || !GitScmProviderRepository.PROTOCOL_GIT.equals(getScmType())) {
+            return null;
+        }
+        try {
+            GitDirectory gitDirectory = GitDirectory.find(scmDirectory);
+            String branch = gitDirectory != null ? gitDirectory.getBranch() : null;
+            if (branch != null) {
+                getLog().debug("Read branch " + branch + " from the git directory.");
+            }
+            return branch;
+        } catch (IOException e) {
+            getLog().debug("Cannot read the git directory, asking the SCM provider: " + e.getLocalizedMessage());
+            return null;
+        }
     }
 
-    private String getScmBranchFromUrl() throws MojoExecutionException {
+    /**
+     * Read the current branch from <code>.hg/branch</code>, like <code>hg id -b</code> does.
+     *
+     * @return the branch or <code>null</code> if <code>hg</code> has to be asked
+     */
+    private String readHgBranch() {
+        if (!readScmDirectory || !"hg".equals(getScmType())) {
+            return null;
+        }
+        HgDirectory hgDirectory = HgDirectory.find(scmDirectory);
+        if (hgDirectory == null) {
+            return null;
+        }
+        try {
+            String branch = hgDirectory.getBranch();
+            getLog().debug("Read branch " + branch + " from the hg directory.");
+            return branch;
+        } catch (IOException e) {
+            getLog().debug("Cannot read the hg directory, running hg: " + e.getLocalizedMessage());
+            return null;
+        }
+    }
+
+    private String getScmBranchFromUrl(boolean[] scmFailed) throws MojoExecutionException {
         String scmUrl = null;
         try {
             ScmRepository repository = getScmRepository();
@@ -557,8 +975,7 @@ public class CreateMojo extends AbstractScmMojo {
             }
             if (scmResult.getInfoItems().isEmpty()) {
                 if (!StringUtils.isEmpty(revisionOnScmFailure)) {
-                    setDoCheck(false);
-                    setDoUpdate(false);
+                    scmFailed[0] = true;
 
                     return DEFAULT_BRANCH_NAME;
                 }
@@ -572,8 +989,7 @@ public class CreateMojo extends AbstractScmMojo {
                 getLog().warn("Cannot get the branch information from the scm repository, proceeding with "
                         + DEFAULT_BRANCH_NAME + " : \n" + e.getLocalizedMessage());
 
-                setDoCheck(false);
-                setDoUpdate(false);
+                scmFailed[0] = true;
 
                 return DEFAULT_BRANCH_NAME;
             }
@@ -608,6 +1024,22 @@ public class CreateMojo extends AbstractScmMojo {
         }
         useScm = false;
 
+        boolean[] scmFailed = new boolean[1];
+        String revision = queryRevision(scmFailed);
+        if (scmFailed[0]) {
+            skipCheckAndUpdate();
+        }
+        return revision;
+    }
+
+    /**
+     * Get the revision info from the repository, without changing the state of this mojo.
+     *
+     * @param scmFailed set if the SCM failed and <code>revisionOnScmFailure</code> is returned
+     * @return the revision
+     * @throws MojoExecutionException if the SCM failed and the build should fail
+     */
+    private String queryRevision(boolean[] scmFailed) throws MojoExecutionException {
         try {
             return this.getScmRevision();
         } catch (ScmException e) {
@@ -616,8 +1048,7 @@ public class CreateMojo extends AbstractScmMojo {
                 getLog().warn(warnMessage + ", proceeding with " + "revision of " + revisionOnScmFailure + " : \n"
                         + e.getLocalizedMessage());
 
-                setDoCheck(false);
-                setDoUpdate(false);
+                scmFailed[0] = true;
 
                 return revisionOnScmFailure;
             }
@@ -630,6 +1061,11 @@ public class CreateMojo extends AbstractScmMojo {
         }
     }
 
+    private void skipCheckAndUpdate() {
+        setDoCheck(false);
+        setDoUpdate(false);
+    }
+
     // ////////////////////////////////////////////////////////////////////////////////////////////
     // setters to help with test
     public void setScmManager(ScmManager scmManager) {
@@ -681,6 +1117,18 @@ public class CreateMojo extends AbstractScmMojo {
         this.buildNumberPropertiesFileLocation = buildNumberPropertiesFileLocation;
     }
 
+    public void setBuildNumberServiceUrl(String buildNumberServiceUrl) {
+        this.buildNumberServiceUrl = buildNumberServiceUrl;
+    }
+
+    public void setBuildNumberLeaseSize(int buildNumberLeaseSize) {
+        this.buildNumberLeaseSize = buildNumberLeaseSize;
+    }
+
+    public void setBuildNumberLeaseFile(File buildNumberLeaseFile) {
+        this.buildNumberLeaseFile = buildNumberLeaseFile;
+    }
+
     public void setScmDirectory(File scmDirectory) {
         this.scmDirectory = scmDirectory;
     }
@@ -693,6 +1141,18 @@ public class CreateMojo extends AbstractScmMojo {
         this.shortRevisionLength = shortRevision;
     }
 
+    public void setConcurrentScmQueries(boolean concurrentScmQueries) {
+        this.concurrentScmQueries = concurrentScmQueries;
+    }
+
+    public void setMaxReportedModifications(int maxReportedModifications) {
+        this.maxReportedModifications = maxReportedModifications;
+    }
+
+    public void setCombinedGitStatus(boolean combinedGitStatus) {
+        this.combinedGitStatus = combinedGitStatus;
+    }
+
     public void setFailTheBuild(boolean failTheBuild) {
         this.failTheBuild = failTheBuild;
     }
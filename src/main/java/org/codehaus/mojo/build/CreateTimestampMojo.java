@@ -31,8 +31,8 @@ import org.apache.maven.project.MavenProject;
 
 /**
  * This mojo is designed to give you a timestamp available through one or more properties. Only a single timestamp is
- * created for each execution of the mojo. This timestamp can be format into one or more strings which are then saved to
- * properties.
+ * created for each build, which is also used by the create and create-metadata goals. This timestamp can be format into
+ * one or more strings which are then saved to properties.
  * create a timestamp property
  *
  * @author pgier
@@ -85,6 +85,16 @@ public class CreateTimestampMojo extends AbstractMojo {
             return;
         }
 
+        long start = System.nanoTime();
+        try {
+            createTimestamp();
+        } finally {
+            BuildTimings.of(session, getLog())
+                    .record("create-timestamp", BuildTimings.EXECUTION, System.nanoTime() - start);
+        }
+    }
+
+    private void createTimestamp() {
         if (session.getCurrentProject().isExecutionRoot() && !executeRootOnly) {
             getLog().info("Skipping because we are not in root module.");
         }
@@ -97,7 +107,7 @@ public class CreateTimestampMojo extends AbstractMojo {
             return;
         }
 
-        timestampString = Utils.createTimestamp(timestampFormat, timezone);
+        timestampString = Utils.createTimestamp(session, timestampFormat, timezone, getLog());
 
         getLog().debug("Storing timestamp property: " + timestampPropertyName + " " + timestampString);
 
@@ -0,0 +1,415 @@
+package org.codehaus.mojo.build;
+
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2015 Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * Reads <code>HEAD</code>, refs and commits straight from a <code>.git</code> directory, so the common revision and
+ * branch queries need no <code>git</code> process. Linked worktrees and submodules are followed through their
+ * <code>gitdir:</code> and <code>commondir</code> files.
+ * <p>
+ * Every method returns <code>null</code> when the repository layout is not understood (e.g. reftable, SHA-256 object
+ * format, deltified commits), in which case the caller has to ask the SCM provider instead.
+ */
+final class GitDirectory {
+    private static final String SYMREF_PREFIX = "ref: ";
+
+    private static final String BRANCH_PREFIX = "refs/heads/";
+
+    private static final int MAX_SYMREF_DEPTH = 5;
+
+    private static final int OBJECT_ID_LENGTH = 40;
+
+    private static final int PACK_IDX_V2_MAGIC = 0xff744f63;
+
+    private static final int OBJ_COMMIT = 1;
+
+    /**
+     * Number of bytes read from the start of a commit, enough for its tree and parent lines.
+     */
+    private static final int OBJECT_HEAD_LENGTH = 4096;
+
+    private final File gitDir;
+
+    private final File commonDir;
+
+    private GitDirectory(File gitDir, File commonDir) {
+        this.gitDir = gitDir;
+        this.commonDir = commonDir;
+    }
+
+    /**
+     * Find the git directory of the working copy containing the given directory.
+     *
+     * @param directory a directory of the working copy
+     * @return the git directory or <code>null</code> if there is none or it cannot be read without git
+     * @throws IOException if a file cannot be read
+     */
+    static GitDirectory find(File directory) throws IOException {
+        if (directory == null
+                || System.getenv("GIT_DIR") != null
+                || System.getenv("GIT_COMMON_DIR") != null
+                || System.getenv("GIT_CEILING_DIRECTORIES") != null) {
+            return null;
+        }
+        for (File dir = ScmCacheKey.canonical(directory); dir != null; dir = dir.getParentFile()) {
+            File dotGit = new File(dir, ".git");
+            if (dotGit.isDirectory()) {
+                return open(dotGit);
+            } else if (dotGit.isFile()) {
+                // linked worktree or submodule
+                String gitDirLine = readFirstLine(dotGit);
+                if (gitDirLine == null || !gitDirLine.startsWith("gitdir:")) {
+                    return null;
+                }
+                String path = gitDirLine.substring("gitdir:".length()).trim();
+                return open(resolve(dir, path));
+            }
+        }
+        return null;
+    }
+
+    private static GitDirectory open(File gitDir) throws IOException {
+        File commonDir = gitDir;
+        File commonDirFile = new File(gitDir, "commondir");
+        if (commonDirFile.isFile()) {
+            String path = readFirstLine(commonDirFile);
+            if (path == null) {
+                return null;
+            }
+            commonDir = resolve(gitDir, path.trim());
+        }
+        if (!new File(gitDir, "HEAD").isFile()
+                || !new File(commonDir, "objects").isDirectory()
+                || new File(commonDir, "reftable").exists()) {
+            return null;
+        }
+        return new GitDirectory(gitDir, commonDir);
+    }
+
+    /**
+     * Get the branch <code>HEAD</code> points to, like <code>git symbolic-ref --short HEAD</code>.
+     *
+     * @return the branch name or <code>null</code> if <code>HEAD</code> is detached
+     * @throws IOException if a file cannot be read
+     */
+    String getBranch() throws IOException {
+        String head = readFirstLine(new File(gitDir, "HEAD"));
+        if (head == null || !head.startsWith(SYMREF_PREFIX)) {
+            return null;
+        }
+        String ref = head.substring(SYMREF_PREFIX.length()).trim();
+        return ref.startsWith(BRANCH_PREFIX) ? ref.substring(BRANCH_PREFIX.length()) : null;
+    }
+
+    /**
+     * Get the id of the commit <code>HEAD</code> points to.
+     *
+     * @return the full object id or <code>null</code> if it cannot be resolved, e.g. on an unborn branch
+     * @throws IOException if a file cannot be read
+     */
+    String getHeadCommit() throws IOException {
+        return resolveRef("HEAD", 0);
+    }
+
+    /**
+     * Get the files which change when a commit is made or another commit is checked out: <code>HEAD</code>,
+     * <code>packed-refs</code> and the loose ref of the current branch. Some of them may not exist. The index is left
+     * out, as <code>git status</code> rewrites it to refresh its file times.
+     *
+     * @return the files
+     * @throws IOException if <code>HEAD</code> cannot be read
+     */
+    List<File> getStateFiles() throws IOException {
+        File headFile = new File(gitDir, "HEAD");
+        List<File> files = new ArrayList<>();
+        files.add(headFile);
+        files.add(new File(commonDir, "packed-refs"));
+        String head = readFirstLine(headFile);
+        if (head != null && head.startsWith(SYMREF_PREFIX)) {
+            String ref = head.substring(SYMREF_PREFIX.length()).trim();
+            files.add(new File(isPerWorktreeRef(ref) ? gitDir : commonDir, ref));
+        }
+        return files;
+    }
+
+    private String resolveRef(String ref, int depth) throws IOException {
+        if (depth > MAX_SYMREF_DEPTH) {
+            return null;
+        }
+        File looseRef = new File(isPerWorktreeRef(ref) ? gitDir : commonDir, ref);
+        if (looseRef.isFile()) {
+            String value = readFirstLine(looseRef);
+            if (value == null) {
+                return null;
+            }
+            if (value.startsWith(SYMREF_PREFIX)) {
+                return resolveRef(value.substring(SYMREF_PREFIX.length()).trim(), depth + 1);
+            }
+            return isObjectId(value) ? value : null;
+        }
+        return readPackedRef(ref);
+    }
+
+    private static boolean isPerWorktreeRef(String ref) {
+        return !ref.startsWith("refs/")
+                || ref.startsWith("refs/bisect/")
+                || ref.startsWith("refs/worktree/")
+                || ref.startsWith("refs/rewritten/");
+    }
+
+    private String readPackedRef(String ref) throws IOException {
+        File packedRefs = new File(commonDir, "packed-refs");
+        if (!packedRefs.isFile()) {
+            return null;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(packedRefs.toPath(), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                // skip the header and the peeled values of annotated tags
+                if (line.startsWith("#") || line.startsWith("^")) {
+                    continue;
+                }
+                int space = line.indexOf(' ');
+                if (space > 0 && ref.equals(line.substring(space + 1))) {
+                    String id = line.substring(0, space);
+                    return isObjectId(id) ? id : null;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Count the parents of a commit.
+     *
+     * @param commitId the full object id
+     * @return the number of parents or <code>null</code> if the commit cannot be read without git
+     * @throws IOException if a file cannot be read
+     */
+    Integer getParentCount(String commitId) throws IOException {
+        byte[] commit = readLooseCommit(commitId);
+        if (commit == null) {
+            commit = readPackedCommit(commitId);
+        }
+        return commit != null ? countParents(commit) : null;
+    }
+
+    private byte[] readLooseCommit(String commitId) throws IOException {
+        File file = new File(commonDir, "objects/" + commitId.substring(0, 2) + "/" + commitId.substring(2));
+        if (!file.isFile()) {
+            return null;
+        }
+        try (InputStream in = new InflaterInputStream(new FileInputStream(file))) {
+            byte[] data = readHeaderAndParents(in);
+            String header = new String(data, 0, Math.min(data.length, 7), StandardCharsets.US_ASCII);
+            if (!header.equals("commit ")) {
+                return null;
+            }
+            // strip the "commit <size>\0" header
+            for (int i = 0; i < data.length; i++) {
+                if (data[i] == 0) {
+                    return Arrays.copyOfRange(data, i + 1, data.length);
+                }
+            }
+            return null;
+        }
+    }
+
+    private byte[] readPackedCommit(String commitId) throws IOException {
+        File[] indexes = new File(commonDir, "objects/pack").listFiles((dir, name) -> name.endsWith(".idx"));
+        if (indexes == null) {
+            return null;
+        }
+        byte[] id = toBytes(commitId);
+        for (File index : indexes) {
+            long offset = findOffset(index, id);
+            if (offset == -2) {
+                // unsupported index version
+                return null;
+            }
+            if (offset >= 0) {
+                String name = index.getName();
+                File pack = new File(index.getParentFile(), name.substring(0, name.length() - 4) + ".pack");
+                return readPackEntry(pack, offset);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Look up an object in a version 2 pack index.
+     *
+     * @return the offset in the pack, <code>-1</code> if not found or <code>-2</code> if the index is not supported
+     */
+    private static long findOffset(File index, byte[] id) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(index, "r");
+                FileChannel channel = file.getChannel()) {
+            MappedByteBuffer idx = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (idx.getInt(0) != PACK_IDX_V2_MAGIC || idx.getInt(4) != 2) {
+                return -2;
+            }
+            int fanout = 8;
+            int first = id[0] & 0xff;
+            int low = first == 0 ? 0 : idx.getInt(fanout + (first - 1) * 4);
+            int high = idx.getInt(fanout + first * 4);
+            int count = idx.getInt(fanout + 255 * 4);
+            int names = fanout + 256 * 4;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                int cmp = compare(idx, names + mid * 20, id);
+                if (cmp < 0) {
+                    low = mid + 1;
+                } else if (cmp > 0) {
+                    high = mid;
+                } else {
+                    int offsets = names + count * 20 + count * 4;
+                    int offset = idx.getInt(offsets + mid * 4);
+                    if ((offset & 0x80000000) == 0) {
+                        return offset;
+                    }
+                    int largeOffsets = offsets + count * 4;
+                    return idx.getLong(largeOffsets + (offset & 0x7fffffff) * 8);
+                }
+            }
+            return -1;
+        }
+    }
+
+    private static int compare(MappedByteBuffer idx, int position, byte[] id) {
+        for (int i = 0; i < id.length; i++) {
+            int cmp = (idx.get(position + i) & 0xff) - (id[i] & 0xff);
+            if (cmp != 0) {
+                return cmp;
+            }
+        }
+        return 0;
+    }
+
+    private static byte[] readPackEntry(File pack, long offset) throws IOException {
+        try (RandomAccessFile file = new RandomAccessFile(pack, "r")) {
+            file.seek(offset);
+            int b = file.readUnsignedByte();
+            int type = (b >> 4) & 0x07;
+            if (type != OBJ_COMMIT) {
+                // deltified commits are left to git
+                return null;
+            }
+            while ((b & 0x80) != 0) {
+                b = file.readUnsignedByte();
+            }
+            byte[] compressed = new byte[(int) Math.min(2 * OBJECT_HEAD_LENGTH, file.length() - file.getFilePointer())];
+            file.readFully(compressed);
+
+            Inflater inflater = new Inflater();
+            try {
+                inflater.setInput(compressed);
+                byte[] data = new byte[OBJECT_HEAD_LENGTH];
+                int length = inflater.inflate(data);
+                return Arrays.copyOf(data, length);
+            } catch (DataFormatException e) {
+                throw new IOException("Corrupt object in " + pack, e);
+            } finally {
+                inflater.end();
+            }
+        }
+    }
+
+    /**
+     * Read the start of an inflated object.
+     */
+    private static byte[] readHeaderAndParents(InputStream in) throws IOException {
+        byte[] buffer = new byte[OBJECT_HEAD_LENGTH];
+        int length = 0;
+        int read;
+        while (length < buffer.length && (read = in.read(buffer, length, buffer.length - length)) > 0) {
+            length += read;
+        }
+        return Arrays.copyOf(buffer, length);
+    }
+
+    private static Integer countParents(byte[] commit) {
+        String text = new String(commit, StandardCharsets.UTF_8);
+        int parents = 0;
+        int start = 0;
+        while (start < text.length()) {
+            int end = text.indexOf('\n', start);
+            if (end < 0) {
+                // the parent lines did not fit into the buffer
+                return null;
+            }
+            String line = text.substring(start, end);
+            if (line.startsWith("parent ")) {
+                parents++;
+            } else if (!line.startsWith("tree ")) {
+                return parents;
+            }
+            start = end + 1;
+        }
+        return null;
+    }
+
+    private static boolean isObjectId(String value) {
+        if (value.length() != OBJECT_ID_LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (Character.digit(value.charAt(i), 16) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static byte[] toBytes(String objectId) {
+        byte[] bytes = new byte[objectId.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(objectId.substring(i * 2, i * 2 + 2), 16);
+        }
+        return bytes;
+    }
+
+    private static File resolve(File base, String path) {
+        File file = new File(path);
+        return ScmCacheKey.canonical(file.isAbsolute() ? file : new File(base, path));
+    }
+
+    private static String readFirstLine(File file) throws IOException {
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        return lines.isEmpty() ? null : lines.get(0).trim();
+    }
+}
@@ -0,0 +1,253 @@
+package org.codehaus.mojo.build;
+
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2015 Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.maven.scm.ScmException;
+import org.apache.maven.scm.ScmFile;
+import org.apache.maven.scm.ScmFileStatus;
+
+/**
+ * The branch and the changed files of a git working copy, as reported by a single
+ * <code>git status --porcelain=v2 --branch -z</code>. Like the status command of the git provider, the query is
+ * limited to the given directory and ignores untracked files and submodules. Git does not even look for untracked
+ * files, and it does not refresh the index, so it never takes the index lock and never conflicts with another git
+ * command running in the same working copy.
+ * <p>
+ * The output is read as it comes, and reading stops once more than the requested number of changed files has been
+ * seen. Git prints the branch first, so it is known even then.
+ */
+final class GitStatus {
+    private static final String BRANCH_OID = "# branch.oid ";
+
+    private static final String BRANCH_HEAD = "# branch.head ";
+
+    private static final String[] COMMAND = {
+        "git", "status", "--porcelain=v2", "--branch", "--untracked-files=no", "-z", "."
+    };
+
+    private static final Map<String, String> ENVIRONMENT = Collections.singletonMap("GIT_OPTIONAL_LOCKS", "0");
+
+    /**
+     * Ends the records kept by {@link #queryRecords(File, int)} if git was stopped before printing all changed files.
+     * Git itself never prints such a header.
+     */
+    private static final String INCOMPLETE = "# buildnumber.incomplete";
+
+    private String revision;
+
+    private String branch;
+
+    private final List<ScmFile> changedFiles = new ArrayList<>();
+
+    private final int maxChangedFiles;
+
+    private final String pathPrefix;
+
+    private boolean moreChanges;
+
+    private boolean incomplete;
+
+    private GitStatus(int maxChangedFiles, String pathPrefix) {
+        this.maxChangedFiles = maxChangedFiles;
+        this.pathPrefix = pathPrefix;
+    }
+
+    /**
+     * Run <code>git status</code> in the directory.
+     *
+     * @param directory the directory of the working copy to check
+     * @return the status with all changed files
+     * @throws ScmException if git fails
+     */
+    static GitStatus query(File directory) throws ScmException {
+        return query(directory, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Run <code>git status</code> in the directory, stopping after the given number of changed files.
+     *
+     * @param directory the directory of the working copy to check
+     * @param maxChangedFiles the maximum number of changed files to keep, <code>0</code> to stop at the first one
+     * @return the status
+     * @throws ScmException if git fails
+     */
+    static GitStatus query(File directory, int maxChangedFiles) throws ScmException {
+        GitStatus status = new GitStatus(maxChangedFiles, "");
+        Parser parser = status.new Parser();
+        ScmProcess.run(directory, ENVIRONMENT, '\0', parser, COMMAND);
+        return status;
+    }
+
+    /**
+     * Run <code>git status</code> in the directory and keep its output as it is, stopping after the given number of
+     * changed files like {@link #query(File, int)}.
+     *
+     * @param directory the directory of the working copy to check
+     * @param maxChangedFiles the maximum number of changed files to keep
+     * @return the records of the output, to be read with {@link #parse(List, String, int)}
+     * @throws ScmException if git fails
+     */
+    static List<String> queryRecords(File directory, int maxChangedFiles) throws ScmException {
+        List<String> records = new ArrayList<>();
+        Parser parser = new GitStatus(maxChangedFiles, "").new Parser();
+        ScmProcess.run(
+                directory,
+                ENVIRONMENT,
+                '\0',
+                record -> {
+                    // the changed file beyond the limit is kept, so it is seen again when the records are parsed
+                    records.add(record);
+                    if (!parser.consume(record)) {
+                        records.add(INCOMPLETE);
+                        return false;
+                    }
+                    return true;
+                },
+                COMMAND);
+        return records;
+    }
+
+    /**
+     * Read the output of <code>git status</code>, stopping after the given number of changed files.
+     *
+     * @param records the records of the output
+     * @param pathPrefix only the changed files whose path relative to the top level starts with it are kept, e.g.
+     *     <code>module/</code>, or the empty string for all
+     * @param maxChangedFiles the maximum number of changed files to keep
+     * @return the status
+     */
+    static GitStatus parse(List<?> records, String pathPrefix, int maxChangedFiles) {
+        GitStatus status = new GitStatus(maxChangedFiles, pathPrefix);
+        Parser parser = status.new Parser();
+        for (Object record : records) {
+            if (!parser.consume((String) record)) {
+                break;
+            }
+        }
+        return status;
+    }
+
+    /**
+     * @return the commit checked out or <code>null</code> if there is none yet
+     */
+    String getRevision() {
+        return revision;
+    }
+
+    /**
+     * @return the current branch or <code>null</code> if the head is detached
+     */
+    String getBranch() {
+        return branch;
+    }
+
+    /**
+     * @return the added, modified, deleted and renamed files, at most the requested number
+     */
+    List<ScmFile> getChangedFiles() {
+        return Collections.unmodifiableList(changedFiles);
+    }
+
+    /**
+     * @return whether there are more changed files than returned by {@link #getChangedFiles()}
+     */
+    boolean hasMoreChanges() {
+        return moreChanges;
+    }
+
+    /**
+     * @return whether there are local modifications
+     */
+    boolean hasChanges() {
+        return !changedFiles.isEmpty() || moreChanges;
+    }
+
+    /**
+     * @return whether the records read by {@link #parse(List, String, int)} ended before the requested number of
+     *     changed files was exceeded, so more changed files may have been missed
+     */
+    boolean isIncomplete() {
+        return incomplete;
+    }
+
+    /**
+     * Parses the records of the output. A renamed or copied entry is followed by a record holding the original path.
+     */
+    private class Parser implements ScmProcess.RecordConsumer {
+        private boolean skipOriginalPath;
+
+        @Override
+        public boolean consume(String record) {
+            if (skipOriginalPath) {
+                skipOriginalPath = false;
+            } else if (INCOMPLETE.equals(record)) {
+                incomplete = true;
+            } else if (record.startsWith(BRANCH_OID)) {
+                String oid = record.substring(BRANCH_OID.length());
+                revision = "(initial)".equals(oid) ? null : oid;
+            } else if (record.startsWith(BRANCH_HEAD)) {
+                String head = record.substring(BRANCH_HEAD.length());
+                branch = "(detached)".equals(head) ? null : head;
+            } else if (record.startsWith("1 ")) {
+                // 1 <XY> <sub> <mH> <mI> <mW> <hH> <hI> <path>
+                return addChangedFile(record, 8, null);
+            } else if (record.startsWith("2 ")) {
+                // 2 <XY> <sub> <mH> <mI> <mW> <hH> <hI> <X><score> <path>
+                skipOriginalPath = true;
+                return addChangedFile(record, 9, ScmFileStatus.RENAMED);
+            } else if (record.startsWith("u ")) {
+                // u <XY> <sub> <m1> <m2> <m3> <mW> <h1> <h2> <h3> <path>
+                return addChangedFile(record, 10, ScmFileStatus.MODIFIED);
+            }
+            // untracked and ignored files do not count
+            return true;
+        }
+
+        private boolean addChangedFile(String record, int pathField, ScmFileStatus status) {
+            String[] fields = record.split(" ", pathField + 1);
+            if (fields.length <= pathField || fields[2].startsWith("S") || !fields[pathField].startsWith(pathPrefix)) {
+                return true;
+            }
+            if (changedFiles.size() >= maxChangedFiles) {
+                moreChanges = true;
+                return false;
+            }
+            changedFiles.add(new ScmFile(fields[pathField], status != null ? status : getStatus(fields[1])));
+            return true;
+        }
+
+        private ScmFileStatus getStatus(String xy) {
+            if (xy.charAt(0) == 'A') {
+                return ScmFileStatus.ADDED;
+            }
+            if (xy.indexOf('D') >= 0) {
+                return ScmFileStatus.DELETED;
+            }
+            return ScmFileStatus.MODIFIED;
+        }
+    }
+}
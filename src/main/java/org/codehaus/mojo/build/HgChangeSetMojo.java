@@ -21,7 +21,10 @@ package org.codehaus.mojo.build;
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  */
 import java.io.File;
+import java.io.IOException;
+import java.util.List;
 
+import org.apache.maven.execution.MavenSession;
 import org.apache.maven.plugin.AbstractMojo;
 import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.plugins.annotations.LifecyclePhase;
@@ -55,6 +58,12 @@ public class HgChangeSetMojo extends AbstractMojo {
     @Parameter(defaultValue = "${project}", required = true, readonly = true)
     private MavenProject project;
 
+    /**
+     * The maven session.
+     */
+    @Parameter(defaultValue = "${session}", required = true, readonly = true)
+    private MavenSession session;
+
     /**
      * Local directory to be used to issue SCM actions
      *
@@ -72,6 +81,25 @@ public class HgChangeSetMojo extends AbstractMojo {
     @Parameter(property = "maven.buildNumber.useLastChangeSetInDirectory", defaultValue = "false")
     private Boolean useLastChangeSetInDirectory;
 
+    /**
+     * Run the hg commands in one Mercurial command server per repository and session, instead of starting a new
+     * <code>hg</code> process for each of them. The servers are stopped at the end of the session.
+     *
+     * @since 3.3.1
+     */
+    @Parameter(property = "maven.buildNumber.useHgCommandServer", defaultValue = "false")
+    private boolean useHgCommandServer;
+
+    /**
+     * Read the current changeset from <code>.hg/dirstate</code> instead of running <code>hg id -i</code>. Unlike
+     * <code>hg id -i</code>, this does not append <code>+</code> to the changeset if there are local modifications.
+     * Has no effect with <code>useLastChangeSetInDirectory</code>.
+     *
+     * @since 3.3.1
+     */
+    @Parameter(property = "maven.buildNumber.readHgDirstate", defaultValue = "false")
+    private boolean readHgDirstate;
+
     private void checkResult(ScmResult result) throws MojoExecutionException {
         if (!result.isSuccess()) {
             getLog().debug("Provider message:");
@@ -89,6 +117,7 @@ public class HgChangeSetMojo extends AbstractMojo {
             return;
         }
 
+        long start = System.nanoTime();
         try {
             String previousChangeSet = getChangeSetProperty();
             String previousChangeSetDate = getChangeSetDateProperty();
@@ -102,28 +131,127 @@ public class HgChangeSetMojo extends AbstractMojo {
             }
         } catch (ScmException e) {
             throw new MojoExecutionException("SCM Exception", e);
+        } finally {
+            BuildTimings.of(session, getLog()).record("hgchangeset", BuildTimings.EXECUTION, System.nanoTime() - start);
         }
     }
 
     protected String getHgCommandOutput(String[] command) throws ScmException, MojoExecutionException {
+        return runHgCommand(command).getOutput();
+    }
+
+    private HgOutputConsumer runHgCommand(String[] command) throws ScmException, MojoExecutionException {
         HgOutputConsumer consumer = new HgOutputConsumer();
-        ScmResult result = HgUtils.execute(consumer, scmDirectory, command);
+        long start = System.nanoTime();
+        ScmResult result;
+        try {
+            result = JfrEvents.scmCommand("hg", String.join(" ", command), scmDirectory, () -> {
+                if (useHgCommandServer) {
+                    return HgCommandServers.execute(session, getLog(), scmDirectory, consumer, command);
+                }
+                BuildTimings.of(session, getLog()).processStarted();
+                return HgUtils.execute(consumer, scmDirectory, command);
+            });
+        } finally {
+            BuildTimings.of(session, getLog()).record("hgchangeset", "info", System.nanoTime() - start);
+        }
         checkResult(result);
-        return consumer.getOutput();
+        return consumer;
+    }
+
+    /**
+     * Get the output lines of the given command from the cache shared by all executions in the current session,
+     * running it on the first call only.
+     */
+    private List<String> getCachedHgCommandLines(String query, String[] command) throws MojoExecutionException {
+        // the last changeset in a directory depends on the directory, the current one only on the repository
+        File root = useLastChangeSetInDirectory
+                ? ScmCacheKey.canonical(scmDirectory)
+                : ScmCacheKey.findRepositoryRoot(scmDirectory, "hg");
+        ScmCacheKey key = new ScmCacheKey(query, root, "hg", null, 0, useLastChangeSetInDirectory);
+        return SessionCache.of(session)
+                .get(
+                        key,
+                        () -> {
+                            try {
+                                return runHgCommand(command).getLines();
+                            } catch (ScmException e) {
+                                throw new MojoExecutionException("SCM Exception", e);
+                            }
+                        },
+                        getLog());
+    }
+
+    private String getCachedHgCommandOutput(String query, String[] command) throws MojoExecutionException {
+        List<String> lines = getCachedHgCommandLines(query, command);
+        return lines.isEmpty() ? null : lines.get(lines.size() - 1);
     }
 
     protected String getChangeSet() throws ScmException, MojoExecutionException {
-        return getHgCommandOutput(
-                useLastChangeSetInDirectory
-                        ? new String[] {"log", "-l1", "--template", "\"{node|short}\"", "."}
-                        : new String[] {"id", "-i"});
+        if (useLastChangeSetInDirectory) {
+            return getLastChangeSetInDirectory()[0];
+        }
+        if (readHgDirstate) {
+            String parent = readHgParent();
+            if (parent != null) {
+                return parent;
+            }
+        }
+        return getCachedHgCommandOutput("changeSet", new String[] {"id", "-i"});
     }
 
     protected String getChangeSetDate() throws ScmException, MojoExecutionException {
-        return getHgCommandOutput(
-                useLastChangeSetInDirectory
-                        ? new String[] {"log", "-l1", "--template", "\"{date|isodate}\"", "."}
-                        : new String[] {"log", "-r", ".", "--template", "\"{date|isodate}\""});
+        if (useLastChangeSetInDirectory) {
+            return getLastChangeSetInDirectory()[1];
+        }
+        return getCachedHgCommandOutput(
+                "changeSetDate", new String[] {"log", "-r", ".", "--template", "\"{date|isodate}\""});
+    }
+
+    /**
+     * Get the last changeset in {@link #scmDirectory} and its date with a single <code>hg log</code>.
+     *
+     * @return the changeset and the date
+     */
+    private String[] getLastChangeSetInDirectory() throws MojoExecutionException {
+        List<String> lines = getCachedHgCommandLines(
+                "lastChangeSetAndDate",
+                new String[] {"log", "-l1", "--template", "\"{node|short}\"\\n\"{date|isodate}\"", "."});
+        if (lines.isEmpty()) {
+            // no changeset yet
+            return new String[2];
+        }
+        if (lines.size() == 2) {
+            return lines.toArray(new String[0]);
+        }
+        // unexpected output, e.g. from an old hg
+        return new String[] {
+            getCachedHgCommandOutput("changeSet", new String[] {"log", "-l1", "--template", "\"{node|short}\"", "."}),
+            getCachedHgCommandOutput(
+                    "changeSetDate", new String[] {"log", "-l1", "--template", "\"{date|isodate}\"", "."})
+        };
+    }
+
+    /**
+     * Read the changeset the working copy is based on from <code>.hg/dirstate</code>.
+     *
+     * @return the short changeset id or <code>null</code> if <code>hg</code> has to be asked
+     */
+    private String readHgParent() {
+        HgDirectory hgDirectory = HgDirectory.find(scmDirectory);
+        if (hgDirectory == null) {
+            return null;
+        }
+        try {
+            String parent = hgDirectory.getParent();
+            if (parent != null) {
+                getLog().debug("Read changeset " + parent + " from the hg directory.");
+            }
+            return parent;
+        } catch (IOException e) {
+            getLog().debug("Cannot read the hg directory, running hg: " + e.getLocalizedMessage());
+            return null;
+        }
     }
 
     protected String getChangeSetDateProperty() {
@@ -0,0 +1,203 @@
+package org.codehaus.mojo.build;
+
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2015 Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.scm.ScmException;
+import org.apache.maven.scm.ScmResult;
+import org.apache.maven.scm.provider.hg.command.HgConsumer;
+
+/**
+ * A Mercurial command server (<code>hg serve --cmdserver pipe</code>) running commands without starting a new
+ * <code>hg</code> process for each of them. The server speaks the binary pipe protocol: each message from the server
+ * is a channel byte and a big-endian length followed by the data; a command is sent as <code>runcommand</code>, the
+ * length and the NUL separated arguments.
+ *
+ * @see <a href="https://www.mercurial-scm.org/wiki/CommandServer">Mercurial command server</a>
+ */
+final class HgCommandServer implements AutoCloseable {
+    private static final int CLOSE_TIMEOUT_SECONDS = 5;
+
+    private final Process process;
+
+    private final DataInputStream in;
+
+    private final DataOutputStream out;
+
+    private HgCommandServer(Process process) {
+        this.process = process;
+        this.in = new DataInputStream(new BufferedInputStream(process.getInputStream()));
+        this.out = new DataOutputStream(new BufferedOutputStream(process.getOutputStream()));
+    }
+
+    /**
+     * Start a command server for the repository.
+     *
+     * @param repositoryRoot the root directory of the repository
+     * @return the running server
+     * @throws ScmException if the server cannot be started
+     */
+    static HgCommandServer start(File repositoryRoot) throws ScmException {
+        return start(repositoryRoot, "hg", "serve", "--cmdserver", "pipe", "--config", "ui.interactive=false");
+    }
+
+    static HgCommandServer start(File repositoryRoot, String... command) throws ScmException {
+        ProcessBuilder processBuilder = new ProcessBuilder(command).directory(repositoryRoot);
+        processBuilder.environment().put("HGENCODING", "UTF-8");
+        // the server reports errors on its own channel, anything else would block it once the pipe is full
+        processBuilder.redirectError(ProcessBuilder.Redirect.INHERIT);
+        Process process;
+        try {
+            process = processBuilder.start();
+        } catch (IOException e) {
+            throw new ScmException("Cannot start the Mercurial command server: " + e.getLocalizedMessage(), e);
+        }
+        HgCommandServer server = new HgCommandServer(process);
+        try {
+            server.readHello();
+        } catch (IOException | ScmException e) {
+            server.close();
+            throw e instanceof ScmException
+                    ? (ScmException) e
+                    : new ScmException("Cannot start the Mercurial command server: " + e.getLocalizedMessage(), e);
+        }
+        return server;
+    }
+
+    private void readHello() throws IOException, ScmException {
+        char channel = (char) in.readUnsignedByte();
+        String hello = new String(readData(), StandardCharsets.UTF_8);
+        if (channel != 'o' || !hello.matches("(?s).*capabilities:[^\n]* runcommand\\b.*")) {
+            throw new ScmException("Unexpected hello from the Mercurial command server: " + hello);
+        }
+    }
+
+    /**
+     * Run an hg command and pass its output to the consumer line by line, like <code>HgUtils.execute</code> does.
+     *
+     * @param directory the working directory of the command
+     * @param consumer receives the output
+     * @param arguments the arguments of the command, without <code>hg</code>
+     * @return the result, successful if the command ended with exit code 0
+     * @throws ScmException if the server does not answer as expected
+     */
+    synchronized ScmResult execute(File directory, HgConsumer consumer, String... arguments) throws ScmException {
+        List<String> args = new ArrayList<>();
+        args.add("--cwd");
+        args.add(directory.getAbsolutePath());
+        args.addAll(Arrays.asList(arguments));
+        byte[] data = String.join("\0", args).getBytes(StandardCharsets.UTF_8);
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ByteArrayOutputStream error = new ByteArrayOutputStream();
+        int exitCode;
+        try {
+            out.write("runcommand\n".getBytes(StandardCharsets.US_ASCII));
+            out.writeInt(data.length);
+            out.write(data);
+            out.flush();
+
+            while (true) {
+                char channel = (char) in.readUnsignedByte();
+                if (channel == 'I' || channel == 'L') {
+                    // the command asks for input, which is not available
+                    in.readInt();
+                    out.writeInt(0);
+                    out.flush();
+                    continue;
+                }
+                byte[] message = readData();
+                if (channel == 'o') {
+                    output.write(message);
+                } else if (channel == 'e') {
+                    error.write(message);
+                } else if (channel == 'r') {
+                    exitCode = new DataInputStream(new ByteArrayInputStream(message)).readInt();
+                    break;
+                } else if (Character.isUpperCase(channel)) {
+                    throw new ScmException("Unsupported channel '" + channel + "' of the Mercurial command server");
+                }
+                // other channels, e.g. debug output, may be ignored
+            }
+        } catch (IOException e) {
+            throw new ScmException("Cannot run hg " + String.join(" ", arguments) + " in the command server", e);
+        }
+
+        for (String line : new String(output.toByteArray(), StandardCharsets.UTF_8).split("\r?\n")) {
+            if (!line.isEmpty()) {
+                consumer.consumeLine(line);
+            }
+        }
+        String commandLine = "hg " + String.join(" ", args);
+        if (exitCode != 0) {
+            return new ScmResult(
+                    commandLine,
+                    "Execution of hg command failed with exit code " + exitCode,
+                    new String(error.toByteArray(), StandardCharsets.UTF_8),
+                    false);
+        }
+        return new ScmResult(commandLine, "Execution of hg command succeded", null, true);
+    }
+
+    private byte[] readData() throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new EOFException("Invalid message length " + length);
+        }
+        byte[] data = new byte[length];
+        in.readFully(data);
+        return data;
+    }
+
+    /**
+     * Stop the server. It ends by itself once its input is closed.
+     */
+    @Override
+    public synchronized void close() {
+        try {
+            out.close();
+        } catch (IOException e) {
+            // the server is gone already
+        }
+        try {
+            if (!process.waitFor(CLOSE_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                process.destroy();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            process.destroy();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package org.codehaus.mojo.build;
+
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2015 Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+import java.io.File;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.scm.ScmException;
+import org.apache.maven.scm.ScmResult;
+import org.apache.maven.scm.provider.hg.HgUtils;
+import org.apache.maven.scm.provider.hg.command.HgConsumer;
+
+/**
+ * The Mercurial command servers of one session, at most one per repository. They are stopped by a
+ * {@link SessionListener} when the session ends. A repository whose server failed to start runs its commands in new
+ * processes for the rest of the session.
+ */
+final class HgCommandServers {
+    private final Map<File, HgCommandServer> servers = new HashMap<>();
+
+    /**
+     * The repositories whose server failed to start.
+     */
+    private final Set<File> failedRoots = new HashSet<>();
+
+    private final BuildTimings timings;
+
+    private HgCommandServers(BuildTimings timings) {
+        this.timings = timings;
+    }
+
+    /**
+     * Run an hg command in the command server of the repository containing the directory, starting the server on
+     * first use. Without a session that can be listened to, or if the server fails, the command is run in a new
+     * process by <code>HgUtils</code> instead.
+     *
+     * @param session the maven session, may be <code>null</code>
+     * @param log logs why a command is not run by the server
+     * @param directory the working directory of the command
+     * @param consumer receives the output
+     * @param arguments the arguments of the command, without <code>hg</code>
+     * @return the result
+     * @throws ScmException if the command cannot be run
+     */
+    static ScmResult execute(MavenSession session, Log log, File directory, HgConsumer consumer, String... arguments)
+            throws ScmException {
+        HgCommandServers commandServers = session != null
+                ? SessionCache.of(session).get(HgCommandServers.class, () -> create(session, log), log)
+                : null;
+        HgCommandServer server = null;
+        File root = ScmCacheKey.findRepositoryRoot(directory, "hg");
+        if (commandServers != null) {
+            server = commandServers.get(root, log);
+        }
+        if (server == null) {
+            return startHg(session, log, directory, consumer, arguments);
+        }
+        try {
+            return server.execute(directory, consumer, arguments);
+        } catch (ScmException e) {
+            log.debug("Cannot use the Mercurial command server, starting hg: " + e.getLocalizedMessage());
+            commandServers.remove(root, server);
+            return startHg(session, log, directory, consumer, arguments);
+        }
+    }
+
+    private static ScmResult startHg(
+            MavenSession session, Log log, File directory, HgConsumer consumer, String... arguments)
+            throws ScmException {
+        BuildTimings.of(session, log).processStarted();
+        return HgUtils.execute(consumer, directory, arguments);
+    }
+
+    private static HgCommandServers create(MavenSession session, Log log) {
+        HgCommandServers commandServers = new HgCommandServers(BuildTimings.of(session, log));
+        if (!SessionListener.atSessionEnd(session, log, commandServers::close)) {
+            log.debug("Cannot stop Mercurial command servers at the end of the session, starting hg instead.");
+            return null;
+        }
+        return commandServers;
+    }
+
+    /**
+     * @return the server of the repository or <code>null</code> if it fails to start, now or before in this session
+     */
+    private synchronized HgCommandServer get(File root, Log log) {
+        HgCommandServer server = servers.get(root);
+        if (server == null && !failedRoots.contains(root)) {
+            try {
+                server = HgCommandServer.start(root);
+            } catch (ScmException e) {
+                log.debug("Cannot start the Mercurial command server of " + root + ", starting hg for each command: "
+                        + e.getLocalizedMessage());
+                failedRoots.add(root);
+                return null;
+            }
+            timings.processStarted();
+            servers.put(root, server);
+        }
+        return server;
+    }
+
+    private synchronized void remove(File root, HgCommandServer server) {
+        if (servers.remove(root, server)) {
+            server.close();
+        }
+    }
+
+    private synchronized void close() {
+        servers.values().forEach(HgCommandServer::close);
+        servers.clear();
+    }
+}
@@ -0,0 +1,144 @@
+package org.codehaus.mojo.build;
+
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2015 Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+
+/**
+ * Reads the state of a Mercurial working copy straight from its <code>.hg</code> directory, without starting
+ * <code>hg</code>.
+ */
+final class HgDirectory {
+    /**
+     * Starts the docket of the dirstate-v2 format, followed by the parents padded to 32 bytes each.
+     */
+    private static final byte[] DIRSTATE_V2_MARKER = "dirstate-v2\n".getBytes(StandardCharsets.US_ASCII);
+
+    private static final int DIRSTATE_V2_NODE_LENGTH = 32;
+
+    private static final int NODE_LENGTH = 20;
+
+    /**
+     * Length of a short changeset id as printed by <code>hg id -i</code>.
+     */
+    private static final int SHORT_NODE_LENGTH = 12;
+
+    private static final String DEFAULT_BRANCH = "default";
+
+    private final File hgDir;
+
+    private HgDirectory(File hgDir) {
+        this.hgDir = hgDir;
+    }
+
+    /**
+     * Find the <code>.hg</code> directory of the working copy containing the given directory.
+     *
+     * @param directory a directory of the working copy
+     * @return the <code>.hg</code> directory or <code>null</code> if there is none
+     */
+    static HgDirectory find(File directory) {
+        if (directory == null) {
+            return null;
+        }
+        for (File dir = ScmCacheKey.canonical(directory); dir != null; dir = dir.getParentFile()) {
+            File hgDir = new File(dir, ".hg");
+            if (hgDir.isDirectory()) {
+                return new HgDirectory(hgDir);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the branch of the working copy like <code>hg id -b</code> does.
+     *
+     * @return the branch name
+     * @throws IOException if <code>.hg/branch</code> cannot be read
+     */
+    String getBranch() throws IOException {
+        String branch;
+        try (BufferedReader reader =
+                Files.newBufferedReader(hgDir.toPath().resolve("branch"), StandardCharsets.UTF_8)) {
+            branch = reader.readLine();
+        } catch (NoSuchFileException e) {
+            branch = null;
+        }
+        return branch == null || branch.trim().isEmpty() ? DEFAULT_BRANCH : branch.trim();
+    }
+
+    /**
+     * Get the short id of the changeset the working copy is based on, like <code>hg id -i</code> without the
+     * <code>+</code> marking local modifications.
+     *
+     * @return the short changeset id or <code>null</code> if it cannot be read, e.g. during a merge
+     * @throws IOException if <code>.hg/dirstate</code> cannot be read
+     */
+    String getParent() throws IOException {
+        byte[] parents = new byte[DIRSTATE_V2_MARKER.length + 2 * DIRSTATE_V2_NODE_LENGTH];
+        int length = 0;
+        try (InputStream in = Files.newInputStream(hgDir.toPath().resolve("dirstate"))) {
+            int read;
+            while (length < parents.length && (read = in.read(parents, length, parents.length - length)) > 0) {
+                length += read;
+            }
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+
+        int p1 = 0;
+        int p2 = NODE_LENGTH;
+        if (length >= DIRSTATE_V2_MARKER.length && startsWithMarker(parents)) {
+            p1 = DIRSTATE_V2_MARKER.length;
+            p2 = p1 + DIRSTATE_V2_NODE_LENGTH;
+        }
+        if (length < p2 + NODE_LENGTH) {
+            return null;
+        }
+        for (int i = p2; i < p2 + NODE_LENGTH; i++) {
+            if (parents[i] != 0) {
+                // hg id -i reports both parents of an uncommitted merge
+                return null;
+            }
+        }
+
+        StringBuilder id = new StringBuilder(SHORT_NODE_LENGTH);
+        for (int i = p1; id.length() < SHORT_NODE_LENGTH; i++) {
+            id.append(Character.forDigit((parents[i] >> 4) & 0xf, 16)).append(Character.forDigit(parents[i] & 0xf, 16));
+        }
+        return id.toString();
+    }
+
+    private static boolean startsWithMarker(byte[] data) {
+        for (int i = 0; i < DIRSTATE_V2_MARKER.length; i++) {
+            if (data[i] != DIRSTATE_V2_MARKER[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
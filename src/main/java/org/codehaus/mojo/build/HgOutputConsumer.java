@@ -1,5 +1,8 @@
 package org.codehaus.mojo.build;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.apache.maven.scm.ScmFileStatus;
 import org.apache.maven.scm.provider.hg.command.HgConsumer;
 
@@ -7,6 +10,8 @@ class HgOutputConsumer extends HgConsumer {
 
     private String output;
 
+    private final List<String> lines = new ArrayList<>();
+
     HgOutputConsumer() {
         super();
     }
@@ -14,9 +19,14 @@ class HgOutputConsumer extends HgConsumer {
     @Override
     public void doConsume(ScmFileStatus status, String line) {
         output = line;
+        lines.add(line);
     }
 
     String getOutput() {
         return output;
     }
+
+    List<String> getLines() {
+        return lines;
+    }
 }
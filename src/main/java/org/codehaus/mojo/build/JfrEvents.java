@@ -0,0 +1,305 @@
+package org.codehaus.mojo.build;
+
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2015 Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+import java.io.File;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.maven.scm.ScmResult;
+
+/**
+ * Emits JDK Flight Recorder events for the SCM commands, the build number counter and the output files of this
+ * plugin, so they show up in recordings of a build, e.g. with <code>MAVEN_OPTS=-XX:StartFlightRecording</code>.
+ * <p>
+ * The plugin is compiled for Java 8, so the <code>jdk.jfr</code> API is used through reflection: the event types
+ * are created with <code>jdk.jfr.EventFactory</code> when the first event is recorded. Without a running recording,
+ * {@link #begin(Type)} returns <code>null</code>, and committing <code>null</code> does nothing. Whether a recording
+ * runs is asked for each event rather than followed with a <code>FlightRecorderListener</code>, which the flight
+ * recorder would keep, together with the class realm of this plugin, for as long as the JVM runs, e.g. in a Maven
+ * daemon. It is cheap enough for the few events of a build, and does not initialize the flight recorder.
+ */
+final class JfrEvents {
+    /**
+     * The event types of this plugin.
+     */
+    enum Type {
+        SCM_COMMAND(
+                "ScmCommand",
+                "SCM Command",
+                field(String.class, "provider", "Provider"),
+                field(String.class, "command", "Command"),
+                field(String.class, "directory", "Directory"),
+                field(int.class, "exitStatus", "Exit Status"),
+                field(long.class, "outputBytes", "Output Bytes")),
+        COUNTER_IO(
+                "CounterIo",
+                "Build Number Counter I/O",
+                field(String.class, "operation", "Operation"),
+                field(String.class, "file", "File"),
+                field(String.class, "keys", "Keys")),
+        OUTPUT_WRITE(
+                "OutputWrite",
+                "Output Format Write",
+                field(String.class, "format", "Format"),
+                field(int.class, "properties", "Properties"),
+                field(long.class, "bytes", "Bytes"));
+
+        private final String name;
+
+        private final String label;
+
+        private final Object[][] fields;
+
+        Type(String name, String label, Object[]... fields) {
+            this.name = "org.codehaus.mojo.buildnumber." + name;
+            this.label = label;
+            this.fields = fields;
+        }
+
+        String getName() {
+            return name;
+        }
+    }
+
+    private static Object[] field(Class<?> type, String name, String label) {
+        return new Object[] {type, name, label};
+    }
+
+    private static final Jfr JFR = Jfr.load();
+
+    private JfrEvents() {}
+
+    /**
+     * Begin an event, e.g. before running an SCM command.
+     *
+     * @param type the type of the event
+     * @return the event or <code>null</code> if no recording is running
+     */
+    static Object begin(Type type) {
+        if (!isRecording()) {
+            return null;
+        }
+        return JFR.begin(type);
+    }
+
+    /**
+     * End and commit an event with the values of its fields.
+     *
+     * @param event the event from {@link #begin(Type)}, may be <code>null</code>
+     * @param values the values of the fields of the event type, in their order
+     */
+    static void commit(Object event, Object... values) {
+        if (event != null) {
+            JFR.commit(event, values);
+        }
+    }
+
+    /**
+     * Run an SCM command through a provider and record it as event.
+     *
+     * @param provider the SCM type or provider, e.g. <code>git</code>
+     * @param command the command, e.g. <code>status</code>
+     * @param directory the directory the command runs in
+     * @param work runs the command
+     * @return the result of the command
+     * @throws E if the command fails
+     */
+    static <T extends ScmResult, E extends Exception> T scmCommand(
+            String provider, String command, File directory, SessionCache.Loader<T, E> work) throws E {
+        Object event = begin(Type.SCM_COMMAND);
+        if (event == null) {
+            return work.load();
+        }
+        int exitStatus = -1;
+        long outputBytes = 0;
+        try {
+            T result = work.load();
+            exitStatus = result == null || result.isSuccess() ? 0 : 1;
+            if (result != null && result.getCommandOutput() != null) {
+                outputBytes = result.getCommandOutput().length();
+            }
+            return result;
+        } finally {
+            commit(event, provider, command, String.valueOf(directory), exitStatus, outputBytes);
+        }
+    }
+
+    static boolean isRecording() {
+        return JFR != null && JFR.isRecording();
+    }
+
+    /**
+     * The reflective access to <code>jdk.jfr</code>.
+     */
+    private static final class Jfr {
+        private final Method newEvent;
+
+        private final Method begin;
+
+        private final Method end;
+
+        private final Method set;
+
+        private final Method commit;
+
+        private final Constructor<?> annotationElement;
+
+        private final Constructor<?> valueDescriptor;
+
+        private final Method createFactory;
+
+        private final Class<? extends Annotation> nameAnnotation;
+
+        private final Class<? extends Annotation> labelAnnotation;
+
+        private final Class<? extends Annotation> categoryAnnotation;
+
+        private final Method isInitialized;
+
+        private final Method getFlightRecorder;
+
+        private final Method getRecordings;
+
+        private final Method getState;
+
+        /**
+         * The event factories by type, created when the first event is recorded.
+         */
+        private volatile Object[] factories;
+
+        @SuppressWarnings("unchecked")
+        private Jfr() throws ReflectiveOperationException {
+            Class<?> eventFactory = Class.forName("jdk.jfr.EventFactory");
+            Class<?> event = Class.forName("jdk.jfr.Event");
+            Class<?> annotationElementClass = Class.forName("jdk.jfr.AnnotationElement");
+            newEvent = eventFactory.getMethod("newEvent");
+            begin = event.getMethod("begin");
+            end = event.getMethod("end");
+            set = event.getMethod("set", int.class, Object.class);
+            commit = event.getMethod("commit");
+            annotationElement = annotationElementClass.getConstructor(Class.class, Object.class);
+            valueDescriptor =
+                    Class.forName("jdk.jfr.ValueDescriptor").getConstructor(Class.class, String.class, List.class);
+            createFactory = eventFactory.getMethod("create", List.class, List.class);
+            nameAnnotation = (Class<? extends Annotation>) Class.forName("jdk.jfr.Name");
+            labelAnnotation = (Class<? extends Annotation>) Class.forName("jdk.jfr.Label");
+            categoryAnnotation = (Class<? extends Annotation>) Class.forName("jdk.jfr.Category");
+            Class<?> flightRecorder = Class.forName("jdk.jfr.FlightRecorder");
+            isInitialized = flightRecorder.getMethod("isInitialized");
+            getFlightRecorder = flightRecorder.getMethod("getFlightRecorder");
+            getRecordings = flightRecorder.getMethod("getRecordings");
+            getState = Class.forName("jdk.jfr.Recording").getMethod("getState");
+        }
+
+        /**
+         * @return the access or <code>null</code> if this JVM has no flight recorder
+         */
+        static Jfr load() {
+            try {
+                return new Jfr();
+            } catch (ReflectiveOperationException | RuntimeException | LinkageError e) {
+                return null;
+            }
+        }
+
+        /**
+         * @return whether a recording is running, without initializing the flight recorder
+         */
+        boolean isRecording() {
+            try {
+                if (!(Boolean) isInitialized.invoke(null)) {
+                    return false;
+                }
+                Object recorder = getFlightRecorder.invoke(null);
+                for (Object recording : (List<?>) getRecordings.invoke(recorder)) {
+                    if ("RUNNING".equals(String.valueOf(getState.invoke(recording)))) {
+                        return true;
+                    }
+                }
+                return false;
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // see begin
+                return false;
+            }
+        }
+
+        Object begin(Type type) {
+            try {
+                Object event = newEvent.invoke(getFactories()[type.ordinal()]);
+                begin.invoke(event);
+                return event;
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // recording this plugin is not worth failing the build
+                return null;
+            }
+        }
+
+        void commit(Object event, Object... values) {
+            try {
+                end.invoke(event);
+                for (int i = 0; i < values.length; i++) {
+                    set.invoke(event, i, values[i]);
+                }
+                commit.invoke(event);
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                // see begin
+            }
+        }
+
+        private Object[] getFactories() throws ReflectiveOperationException {
+            Object[] result = factories;
+            if (result == null) {
+                synchronized (this) {
+                    result = factories;
+                    if (result == null) {
+                        result = new Object[Type.values().length];
+                        for (Type type : Type.values()) {
+                            result[type.ordinal()] = createFactory(type);
+                        }
+                        factories = result;
+                    }
+                }
+            }
+            return result;
+        }
+
+        private Object createFactory(Type type) throws ReflectiveOperationException {
+            List<Object> annotations = Arrays.asList(
+                    annotationElement.newInstance(nameAnnotation, type.name),
+                    annotationElement.newInstance(labelAnnotation, type.label),
+                    annotationElement.newInstance(categoryAnnotation, new String[] {"Maven", "Build Number"}));
+            List<Object> fields = new ArrayList<>();
+            for (Object[] field : type.fields) {
+                fields.add(valueDescriptor.newInstance(
+                        field[0],
+                        field[1],
+                        Collections.singletonList(annotationElement.newInstance(labelAnnotation, field[2]))));
+            }
+            return createFactory.invoke(null, annotations, fields);
+        }
+    }
+}
@@ -3,6 +3,7 @@ package org.codehaus.mojo.build;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.util.Properties;
+import java.util.TreeSet;
 
 import com.google.gson.Gson;
 import com.google.gson.stream.JsonWriter;
@@ -18,7 +19,8 @@ public class JsonOutputFormat extends OutputFormat {
         Gson gson = new Gson();
         try (JsonWriter jsonWriter = gson.newJsonWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8))) {
             jsonWriter.beginObject();
-            for (Object key : props.keySet()) {
+            // sorted, so the same properties always give the same file
+            for (Object key : new TreeSet<>(props.keySet())) {
                 jsonWriter.name((String) key);
                 jsonWriter.value(props.getProperty((String) key));
             }
@@ -0,0 +1,234 @@
+package org.codehaus.mojo.build;
+
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2015 Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+
+/**
+ * Properties of a project whose values are computed when a goal of the project reads them.
+ * <p>
+ * A {@link Deferred} value is computed once, by the first thread reading it; other threads wait for its result.
+ * <p>
+ * The project keeps its own properties. When a goal of the project starts, before its configuration is interpolated,
+ * the lazy properties its configuration refers to with <code>${name}</code> are computed and copied into them, see
+ * {@link SessionListener}. For the <code>resources</code> and <code>testResources</code> goals of the
+ * maven-resources-plugin, the properties the filtered resources refer to are copied as well; its other goals get all
+ * of them. Properties no goal refers to are never computed. Goals reading the project properties in their code, e.g.
+ * scripts, only see the properties which were copied before.
+ * <p>
+ * A failed computation is logged by the goal which deferred the value and fails the build once it ends.
+ */
+final class LazyProperties {
+    private static final String RESOURCES_PLUGIN = "org.apache.maven.plugins:maven-resources-plugin";
+
+    private final MavenSession session;
+
+    private final MavenProject project;
+
+    private final Log log;
+
+    private final Map<String, Deferred> values = new LinkedHashMap<>();
+
+    private boolean listening;
+
+    /**
+     * Computes a value.
+     */
+    interface Computation {
+        String compute() throws Exception;
+    }
+
+    /**
+     * A value computed once on first use. It may be shared by the properties of several projects.
+     */
+    static final class Deferred {
+        private volatile Computation computation;
+
+        private volatile String value;
+
+        private volatile MojoExecutionException failure;
+
+        Deferred(Computation computation) {
+            this.computation = computation;
+        }
+
+        /**
+         * @return whether the value has been computed
+         */
+        boolean isComputed() {
+            return computation == null;
+        }
+
+        /**
+         * Get the value, computing it on first use.
+         *
+         * @return the value
+         * @throws MojoExecutionException if the computation failed, the same exception for every call
+         */
+        String get() throws MojoExecutionException {
+            if (!isComputed()) {
+                synchronized (this) {
+                    if (computation != null) {
+                        try {
+                            value = computation.compute();
+                        } catch (MojoExecutionException e) {
+                            failure = e;
+                        } catch (Exception e) {
+                            failure = new MojoExecutionException(e.getMessage(), e);
+                        }
+                        computation = null;
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            return value;
+        }
+    }
+
+    private LazyProperties(MavenSession session, MavenProject project, Log log) {
+        this.session = session;
+        this.project = project;
+        this.log = log;
+    }
+
+    /**
+     * Get the lazy properties of the project, which are copied into its properties when a goal reading them starts.
+     * Without a session to listen to, they are copied right away, computing them.
+     *
+     * @param session the maven session
+     * @param project the project
+     * @param log the log of the goal deferring the values, reports failed computations
+     * @return the lazy properties of the project
+     */
+    static LazyProperties of(MavenSession session, MavenProject project, Log log) {
+        return SessionCache.of(session)
+                .get(
+                        Arrays.asList(LazyProperties.class, project.getId()),
+                        () -> {
+                            LazyProperties properties = new LazyProperties(session, project, log);
+                            properties.listening = SessionListener.beforeMojo(session, log, (started, executions) -> {
+                                if (started == project) {
+                                    properties.publish(executions);
+                                }
+                            });
+                            return properties;
+                        },
+                        log);
+    }
+
+    /**
+     * Set a property whose value is computed on first use. Without a session to listen to, it is computed right away.
+     *
+     * @param key the name of the property
+     * @param value the value
+     * @throws MojoExecutionException if the value is computed right away and that fails
+     */
+    synchronized void putDeferred(String key, Deferred value) throws MojoExecutionException {
+        if (listening) {
+            values.put(key, value);
+        } else {
+            project.getProperties().put(key, value.get());
+        }
+    }
+
+    /**
+     * @param key the name of a property
+     * @return whether the property is set, here or in the properties of the project, without computing it
+     */
+    synchronized boolean isSet(String key) {
+        return values.containsKey(key) || project.getProperties().get(key) != null;
+    }
+
+    /**
+     * @param key the name of a property
+     * @return whether the property is still waiting for a goal reading it
+     */
+    synchronized boolean isDeferred(String key) {
+        return values.containsKey(key);
+    }
+
+    /**
+     * Copy the properties which the starting goals read into the properties of the project, computing them.
+     *
+     * @param executions the goals about to start
+     */
+    synchronized void publish(List<MojoExecution> executions) {
+        if (values.isEmpty()) {
+            return;
+        }
+        for (String key : getReadKeys(executions)) {
+            publish(key);
+        }
+    }
+
+    private Set<String> getReadKeys(List<MojoExecution> executions) {
+        Set<String> keys = new TreeSet<>();
+        for (MojoExecution execution : executions) {
+            Xpp3Dom configuration = execution.getConfiguration();
+            String text = configuration != null ? configuration.toString() : "";
+            for (String key : values.keySet()) {
+                if (text.contains("${" + key + "}")) {
+                    keys.add(key);
+                }
+            }
+            if (RESOURCES_PLUGIN.equals(execution.getGroupId() + ":" + execution.getArtifactId())) {
+                if ("resources".equals(execution.getGoal())) {
+                    keys.addAll(
+                            PropertyReferences.findInFilteredResources(project.getResources(), values.keySet(), log));
+                } else if ("testResources".equals(execution.getGoal())) {
+                    keys.addAll(PropertyReferences.findInFilteredResources(
+                            project.getTestResources(), values.keySet(), log));
+                } else {
+                    // e.g. copy-resources, whose resources are part of its configuration
+                    keys.addAll(values.keySet());
+                }
+            }
+        }
+        return keys;
+    }
+
+    private void publish(String key) {
+        Deferred deferred = values.remove(key);
+        try {
+            project.getProperties().put(key, deferred.get());
+        } catch (MojoExecutionException e) {
+            // the listener cannot fail the starting goal, the build fails once it ends
+            log.error("Cannot compute " + key + " of " + project.getId() + ": " + e.getMessage());
+            if (session.getResult() != null) {
+                session.getResult().addException(e);
+            }
+        }
+    }
+}
@@ -20,6 +20,7 @@ package org.codehaus.mojo.build;
  * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  */
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Properties;
@@ -43,4 +44,18 @@ public abstract class OutputFormat {
     public abstract boolean handles(String fileName);
 
     public abstract void write(Properties props, OutputStream out) throws IOException;
+
+    /**
+     * Render the properties once, so the result can be written to any number of files.
+     *
+     * @param props the properties
+     * @return the content of a file in this format
+     * @throws IOException if the properties cannot be written
+     * @since 3.3.1
+     */
+    public byte[] render(Properties props) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        write(props, out);
+        return out.toByteArray();
+    }
 }
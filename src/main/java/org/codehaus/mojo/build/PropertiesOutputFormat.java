@@ -20,9 +20,16 @@ package org.codehaus.mojo.build;
  * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  */
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.Map;
 import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
 
 public class PropertiesOutputFormat extends OutputFormat {
     @Override
@@ -30,8 +37,47 @@ public class PropertiesOutputFormat extends OutputFormat {
         return fileName.endsWith(".properties");
     }
 
+    /**
+     * Write the properties sorted by key and without the date comment of {@link Properties#store(OutputStream,
+     * String)}, so the same properties always give the same file.
+     */
     @Override
     public void write(Properties props, OutputStream out) throws IOException {
-        props.store(out, "Created by build system. Do not modify");
+        SortedProperties sorted = new SortedProperties();
+        sorted.putAll(props);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sorted.store(bytes, "Created by build system. Do not modify");
+
+        // the comment is followed by the date
+        String content = new String(bytes.toByteArray(), StandardCharsets.ISO_8859_1);
+        int commentEnd = content.indexOf('\n') + 1;
+        int dateEnd = content.indexOf('\n', commentEnd) + 1;
+        out.write(
+                (content.substring(0, commentEnd) + content.substring(dateEnd)).getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    /**
+     * Properties stored in the order of their keys.
+     */
+    private static final class SortedProperties extends Properties {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public synchronized Enumeration<Object> keys() {
+            return Collections.enumeration(sorted().keySet());
+        }
+
+        @Override
+        public Set<Map.Entry<Object, Object>> entrySet() {
+            return Collections.unmodifiableSet(sorted().entrySet());
+        }
+
+        private synchronized Map<Object, Object> sorted() {
+            Map<Object, Object> sorted = new TreeMap<>();
+            for (Map.Entry<Object, Object> entry : super.entrySet()) {
+                sorted.put(entry.getKey(), entry.getValue());
+            }
+            return sorted;
+        }
     }
 }
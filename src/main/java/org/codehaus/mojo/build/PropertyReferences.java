@@ -0,0 +1,175 @@
+package org.codehaus.mojo.build;
+
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2015 Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Resource;
+import org.apache.maven.model.io.xpp3.MavenXpp3Writer;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.DirectoryScanner;
+
+/**
+ * Finds the properties which the projects of a build refer to, so properties nobody uses need not be computed.
+ * <p>
+ * A property counts as referenced when <code>${name}</code> appears anywhere in the effective model of a project,
+ * including plugin configurations, or optionally when <code>${name}</code> or <code>@name@</code> appears in a file of
+ * a filtered resource directory. Other uses, like scripts reading the project properties, are not found.
+ */
+final class PropertyReferences {
+    private PropertyReferences() {}
+
+    /**
+     * Find the referenced properties, once per session for the same names.
+     *
+     * @param session the maven session, may be <code>null</code>
+     * @param projects the projects to scan
+     * @param names the names of the properties to look for
+     * @param scanFilteredResources whether to scan the filtered resources, too
+     * @param log the log
+     * @return the names which are referenced
+     */
+    static Set<String> find(
+            MavenSession session,
+            final List<MavenProject> projects,
+            Collection<String> names,
+            final boolean scanFilteredResources,
+            final Log log) {
+        final Set<String> sortedNames = new TreeSet<>(names);
+        return SessionCache.of(session)
+                .get(
+                        Arrays.asList(PropertyReferences.class, sortedNames, scanFilteredResources),
+                        () -> scan(projects, sortedNames, scanFilteredResources, log),
+                        log);
+    }
+
+    private static Set<String> scan(
+            List<MavenProject> projects, Set<String> names, boolean scanFilteredResources, Log log) {
+        Set<String> referenced = new HashSet<>();
+        for (MavenProject project : projects) {
+            if (referenced.size() == names.size()) {
+                break;
+            }
+            String model = toXml(project, log);
+            for (String name : names) {
+                if (model == null || model.contains("${" + name + "}")) {
+                    referenced.add(name);
+                }
+            }
+            if (scanFilteredResources && referenced.size() < names.size()) {
+                List<Resource> resources = new ArrayList<>(project.getResources());
+                resources.addAll(project.getTestResources());
+                scanResources(resources, names, referenced, log);
+            }
+        }
+        if (log.isDebugEnabled()) {
+            log.debug("Referenced properties: " + referenced + " of " + names);
+        }
+        return referenced;
+    }
+
+    /**
+     * Find the properties which filtered resources refer to with <code>${name}</code> or <code>@name@</code>.
+     *
+     * @param resources the resources, of which only the filtered ones are scanned
+     * @param names the names of the properties to look for
+     * @param log the log
+     * @return the names which are referenced
+     */
+    static Set<String> findInFilteredResources(List<Resource> resources, Collection<String> names, Log log) {
+        Set<String> referenced = new HashSet<>();
+        scanResources(resources, new TreeSet<>(names), referenced, log);
+        return referenced;
+    }
+
+    private static void scanResources(List<Resource> resources, Set<String> names, Set<String> referenced, Log log) {
+        for (Resource resource : resources) {
+            if (resource.isFiltering() && referenced.size() < names.size()) {
+                scanResource(resource, names, referenced, log);
+            }
+        }
+    }
+
+    /**
+     * @return the effective model as XML, or <code>null</code> if it cannot be written
+     */
+    private static String toXml(MavenProject project, Log log) {
+        StringWriter writer = new StringWriter();
+        try {
+            new MavenXpp3Writer().write(writer, project.getModel());
+        } catch (IOException | RuntimeException e) {
+            log.debug("Cannot write the model of " + project.getId() + ", assuming all properties are used", e);
+            return null;
+        }
+        return writer.toString();
+    }
+
+    private static void scanResource(Resource resource, Set<String> names, Set<String> referenced, Log log) {
+        File directory = new File(resource.getDirectory());
+        if (!directory.isDirectory()) {
+            return;
+        }
+        DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir(directory);
+        if (!resource.getIncludes().isEmpty()) {
+            scanner.setIncludes(resource.getIncludes().toArray(new String[0]));
+        }
+        if (!resource.getExcludes().isEmpty()) {
+            scanner.setExcludes(resource.getExcludes().toArray(new String[0]));
+        }
+        scanner.addDefaultExcludes();
+        scanner.scan();
+
+        for (String file : scanner.getIncludedFiles()) {
+            String content;
+            try {
+                // every byte maps to one char, so names in any ASCII compatible encoding are found
+                content =
+                        new String(Files.readAllBytes(new File(directory, file).toPath()), StandardCharsets.ISO_8859_1);
+            } catch (IOException e) {
+                log.debug("Cannot read " + file + ", assuming all properties are used", e);
+                referenced.addAll(names);
+                return;
+            }
+            for (String name : names) {
+                if (content.contains("${" + name + "}") || content.contains("@" + name + "@")) {
+                    referenced.add(name);
+                }
+            }
+            if (referenced.size() == names.size()) {
+                return;
+            }
+        }
+    }
+}
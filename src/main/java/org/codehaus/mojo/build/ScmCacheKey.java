@@ -0,0 +1,145 @@
+package org.codehaus.mojo.build;
+
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2015 Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+import java.io.File;
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Identifies the result of one SCM query in the {@link SessionCache}. Two mojo executions get the same key when they
+ * ask the same question about the same repository with the same configuration.
+ */
+final class ScmCacheKey {
+    private final String query;
+
+    private final File repositoryRoot;
+
+    private final String scmType;
+
+    private final String scmTag;
+
+    private final int shortRevisionLength;
+
+    private final boolean useLastCommittedRevision;
+
+    ScmCacheKey(
+            String query,
+            File repositoryRoot,
+            String scmType,
+            String scmTag,
+            int shortRevisionLength,
+            boolean useLastCommittedRevision) {
+        this.query = query;
+        this.repositoryRoot = repositoryRoot;
+        this.scmType = scmType;
+        this.scmTag = scmTag;
+        this.shortRevisionLength = shortRevisionLength;
+        this.useLastCommittedRevision = useLastCommittedRevision;
+    }
+
+    /**
+     * Get the SCM type from a connection url like <code>scm:git:https://...</code>.
+     *
+     * @param scmUrl the connection url, may be <code>null</code>
+     * @return the type or <code>null</code> if the url has no type
+     */
+    static String getScmType(String scmUrl) {
+        if (scmUrl == null || !scmUrl.startsWith("scm:")) {
+            return null;
+        }
+        for (int i = 4; i < scmUrl.length(); i++) {
+            char c = scmUrl.charAt(i);
+            if (c == ':' || c == '|') {
+                return scmUrl.substring(4, i);
+            }
+        }
+        return scmUrl.substring(4);
+    }
+
+    /**
+     * Find the root of the working copy containing the given directory. Only Git and Mercurial answer revision and
+     * branch queries for the whole working copy; for every other SCM (e.g. Subversion, where each directory has its own
+     * last changed revision) the directory itself is returned.
+     *
+     * @param directory the directory SCM commands are issued in
+     * @param scmType the SCM type as given in the connection url
+     * @return the root directory of the working copy
+     */
+    static File findRepositoryRoot(File directory, String scmType) {
+        File start = canonical(directory);
+        if (start != null && ("git".equals(scmType) || "hg".equals(scmType))) {
+            String marker = "." + scmType;
+            for (File dir = start; dir != null; dir = dir.getParentFile()) {
+                if (new File(dir, marker).exists()) {
+                    return dir;
+                }
+            }
+        }
+        return start;
+    }
+
+    static File canonical(File file) {
+        if (file == null) {
+            return null;
+        }
+        try {
+            return file.getCanonicalFile();
+        } catch (IOException e) {
+            return file.getAbsoluteFile();
+        }
+    }
+
+    /**
+     * @return a string holding all parts of the key, to identify the result outside of the current session
+     */
+    String getId() {
+        return query + " " + scmType + " " + scmTag + " " + shortRevisionLength + " " + useLastCommittedRevision + " "
+                + repositoryRoot;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof ScmCacheKey)) {
+            return false;
+        }
+        ScmCacheKey that = (ScmCacheKey) o;
+        return shortRevisionLength == that.shortRevisionLength
+                && useLastCommittedRevision == that.useLastCommittedRevision
+                && query.equals(that.query)
+                && Objects.equals(repositoryRoot, that.repositoryRoot)
+                && Objects.equals(scmType, that.scmType)
+                && Objects.equals(scmTag, that.scmTag);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(query, repositoryRoot, scmType, scmTag, shortRevisionLength, useLastCommittedRevision);
+    }
+
+    @Override
+    public String toString() {
+        return query + " of " + scmType + " repository " + repositoryRoot;
+    }
+}
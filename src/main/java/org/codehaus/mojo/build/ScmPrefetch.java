@@ -0,0 +1,237 @@
+package org.codehaus.mojo.build;
+
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2015 Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+import org.eclipse.aether.RepositorySystemSession;
+
+/**
+ * Queries the SCM in the background while the core extension loads the plugin to run the create goal, so the goal only
+ * has to wait for the result. Started by {@link BuildNumberExtension} once the projects are read, it handles the
+ * status of the git working copy holding the base directory of the top level project, if the effective model of that
+ * project configures the create goal to check for local modifications. The revision and branch of such a working copy
+ * are read straight from the <code>.git</code> directory anyway.
+ * <p>
+ * The status covers the whole working copy and stops after the number of changed files the goal reports, like the
+ * status the goal runs itself. Every execution in the same working copy picks the changed files of its directory from
+ * it, unless the status stopped before it saw enough of them.
+ * <p>
+ * The extension and the goals of this plugin are loaded by different class realms, so they do not share the
+ * {@link SessionCache}. The pending output of <code>git status</code> is kept in the data of the repository session
+ * instead, under a string key and holding only JDK classes. For the same reason, the process of the prefetch is not
+ * counted in the {@link BuildTimings} of the goals.
+ */
+final class ScmPrefetch {
+    /**
+     * The user or system property disabling the prefetch.
+     */
+    static final String PROPERTY = "maven.buildNumber.prefetch";
+
+    private ScmPrefetch() {}
+
+    /**
+     * Start running <code>git status</code> for the working copy holding the base directory of the given project in a
+     * daemon thread, if the create goal checks for local modifications.
+     *
+     * @param session the maven session
+     * @param project the top level project, whose configuration of the create goal is used
+     * @param log the log
+     * @return the pending records of the output or <code>null</code> if there is nothing to prefetch
+     */
+    static Future<List<String>> start(MavenSession session, MavenProject project, Log log) {
+        String enabled = session.getUserProperties().getProperty(PROPERTY);
+        if (enabled == null) {
+            enabled = session.getSystemProperties().getProperty(PROPERTY);
+        }
+        File directory = ScmCacheKey.canonical(project.getBasedir());
+        RepositorySystemSession repositorySession = session.getRepositorySession();
+        if ("false".equals(enabled) || directory == null || repositorySession == null) {
+            return null;
+        }
+        try {
+            if (GitDirectory.find(directory) == null) {
+                return null;
+            }
+        } catch (IOException e) {
+            log.debug("Cannot read the git directory, not prefetching the status: " + e.getLocalizedMessage());
+            return null;
+        }
+
+        Configuration configuration = Configuration.of(session, project);
+        if (!configuration.getBoolean("doCheck", false, log) || configuration.getBoolean("doUpdate", false, log)) {
+            log.debug("The create goal does not check for local modifications, not prefetching the status");
+            return null;
+        }
+        int maxChangedFiles = configuration.getBoolean("failTheBuild", true, log)
+                ? Math.max(0, configuration.getInt("maxReportedModifications", 100, log))
+                : 0;
+
+        File root = ScmCacheKey.findRepositoryRoot(directory, "git");
+        FutureTask<List<String>> status = new FutureTask<>(() -> GitStatus.queryRecords(root, maxChangedFiles));
+        if (!repositorySession.getData().set(key(root), null, status)) {
+            return null;
+        }
+        Thread thread = new Thread(status, "buildnumber-prefetch");
+        thread.setDaemon(true);
+        thread.start();
+        log.debug("Prefetching the git status of " + root);
+        return status;
+    }
+
+    /**
+     * Get the prefetched status of the given directory, waiting for it if the query is still running.
+     *
+     * @param session the maven session
+     * @param directory the directory to get the status for
+     * @param maxChangedFiles the maximum number of changed files to keep
+     * @return the status or <code>null</code> if it was not prefetched, the query failed, waiting was interrupted or
+     *     the prefetched status does not hold enough changed files of the directory
+     */
+    static GitStatus getGitStatus(MavenSession session, File directory, int maxChangedFiles) {
+        RepositorySystemSession repositorySession = session != null ? session.getRepositorySession() : null;
+        File canonicalDirectory = ScmCacheKey.canonical(directory);
+        File root = ScmCacheKey.findRepositoryRoot(canonicalDirectory, "git");
+        Object status = repositorySession != null ? repositorySession.getData().get(key(root)) : null;
+        if (!(status instanceof Future)) {
+            return null;
+        }
+        try {
+            GitStatus gitStatus = GitStatus.parse(
+                    (List<?>) ((Future<?>) status).get(), getPathPrefix(root, canonicalDirectory), maxChangedFiles);
+            return gitStatus.isIncomplete() ? null : gitStatus;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException e) {
+            // the query runs again in the current thread, reporting the failure there
+            return null;
+        }
+    }
+
+    private static String key(File root) {
+        return ScmPrefetch.class.getName() + " " + root;
+    }
+
+    /**
+     * @return the path of the directory relative to the top level of the working copy as git prints it, e.g.
+     *     <code>module/</code>, or the empty string for the top level itself
+     */
+    private static String getPathPrefix(File root, File directory) {
+        String path = root.toPath().relativize(directory.toPath()).toString().replace(File.separatorChar, '/');
+        return path.isEmpty() ? path : path + "/";
+    }
+
+    /**
+     * The configuration of the create goal in the effective model of the top level project, which the extension runs
+     * the goal with: the one of the first execution of the goal, or else the one of the plugin. A value may be a
+     * literal or a single property, which is looked up in the user, system and project properties.
+     * <p>
+     * The configuration is read through reflection, since the class realm of a core extension sees the
+     * <code>Xpp3Dom</code> of the plexus-utils this plugin depends on instead of the one of Maven.
+     */
+    private static final class Configuration {
+        private final Object configuration;
+
+        private final MavenSession session;
+
+        private final MavenProject project;
+
+        private Configuration(Object configuration, MavenSession session, MavenProject project) {
+            this.configuration = configuration;
+            this.session = session;
+            this.project = project;
+        }
+
+        static Configuration of(MavenSession session, MavenProject project) {
+            Plugin plugin = project.getPlugin(
+                    BuildNumberExtension.PLUGIN_GROUP_ID + ":" + BuildNumberExtension.PLUGIN_ARTIFACT_ID);
+            Object configuration = null;
+            if (plugin != null) {
+                configuration = plugin.getConfiguration();
+                for (PluginExecution execution : plugin.getExecutions()) {
+                    if (execution.getGoals().contains(BuildNumberExtension.GOAL)) {
+                        configuration = execution.getConfiguration();
+                        break;
+                    }
+                }
+            }
+            return new Configuration(configuration, session, project);
+        }
+
+        boolean getBoolean(String name, boolean defaultValue, Log log) {
+            return Boolean.parseBoolean(get(name, String.valueOf(defaultValue), log));
+        }
+
+        int getInt(String name, int defaultValue, Log log) {
+            try {
+                return Integer.parseInt(get(name, String.valueOf(defaultValue), log));
+            } catch (NumberFormatException e) {
+                return defaultValue;
+            }
+        }
+
+        /**
+         * @param name the name of the parameter, whose property is <code>maven.buildNumber.</code> followed by it
+         */
+        private String get(String name, String defaultValue, Log log) {
+            String value = getParameter(name, log);
+            if (value == null) {
+                value = "${maven.buildNumber." + name + "}";
+            }
+            if (value.startsWith("${") && value.endsWith("}")) {
+                String property = value.substring(2, value.length() - 1);
+                value = session.getUserProperties().getProperty(property);
+                if (value == null) {
+                    value = session.getSystemProperties().getProperty(property);
+                }
+                if (value == null) {
+                    value = project.getProperties().getProperty(property, defaultValue);
+                }
+            }
+            return value.trim();
+        }
+
+        private String getParameter(String name, Log log) {
+            if (configuration == null) {
+                return null;
+            }
+            try {
+                Class<?> dom = configuration.getClass();
+                Object child = dom.getMethod("getChild", String.class).invoke(configuration, name);
+                return child != null ? (String) dom.getMethod("getValue").invoke(child) : null;
+            } catch (ReflectiveOperationException e) {
+                log.debug("Cannot read the parameter " + name + " of the create goal: " + e);
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package org.codehaus.mojo.build;
+
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2015 Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+
+import org.apache.maven.scm.ScmException;
+
+/**
+ * Runs an SCM command line and streams its output record by record, so the output never has to be held in memory
+ * as a whole and reading can stop as soon as the caller has seen enough.
+ */
+final class ScmProcess {
+    /**
+     * Maximum number of characters of the error output kept for the exception message.
+     */
+    private static final int MAX_ERROR_OUTPUT = 8192;
+
+    /**
+     * Receives the records of the output.
+     */
+    interface RecordConsumer {
+        /**
+         * @param record one record of the output, without separator
+         * @return <code>true</code> to continue, <code>false</code> to stop reading and end the process
+         * @throws ScmException if the record cannot be handled
+         */
+        boolean consume(String record) throws ScmException;
+    }
+
+    private ScmProcess() {}
+
+    /**
+     * Run the command and pass each record of its standard output to the consumer.
+     *
+     * @param directory the working directory
+     * @param separator the character terminating each record, e.g. <code>'\n'</code> or <code>'\0'</code>
+     * @param consumer receives the records
+     * @param command the command line
+     * @throws ScmException if the command cannot be started or fails
+     */
+    static void run(File directory, char separator, RecordConsumer consumer, String... command) throws ScmException {
+        run(directory, Collections.emptyMap(), separator, consumer, command);
+    }
+
+    /**
+     * Run the command with additional environment variables and pass each record of its standard output to the
+     * consumer.
+     *
+     * @param directory the working directory
+     * @param environment the variables to set for the command
+     * @param separator the character terminating each record, e.g. <code>'\n'</code> or <code>'\0'</code>
+     * @param consumer receives the records
+     * @param command the command line
+     * @throws ScmException if the command cannot be started or fails
+     */
+    static void run(
+            File directory, Map<String, String> environment, char separator, RecordConsumer consumer, String... command)
+            throws ScmException {
+        Object event = JfrEvents.begin(JfrEvents.Type.SCM_COMMAND);
+        long[] outputBytes = new long[1];
+        int exitStatus = -1;
+        try {
+            exitStatus = run(directory, environment, separator, consumer, outputBytes, command);
+        } finally {
+            JfrEvents.commit(
+                    event,
+                    command[0],
+                    String.join(" ", Arrays.asList(command).subList(1, command.length)),
+                    String.valueOf(directory),
+                    exitStatus,
+                    outputBytes[0]);
+        }
+    }
+
+    /**
+     * @param outputBytes receives the number of bytes read from the standard output
+     * @return the exit code, or <code>-1</code> if the process was ended after the consumer stopped reading
+     */
+    private static int run(
+            File directory,
+            Map<String, String> environment,
+            char separator,
+            RecordConsumer consumer,
+            long[] outputBytes,
+            String... command)
+            throws ScmException {
+        Process process;
+        try {
+            ProcessBuilder builder = new ProcessBuilder(command).directory(directory);
+            builder.environment().putAll(environment);
+            process = builder.start();
+        } catch (IOException e) {
+            throw new ScmException("Cannot run " + Arrays.toString(command) + ": " + e.getLocalizedMessage(), e);
+        }
+
+        StringBuilder errorOutput = new StringBuilder();
+        Thread errorReader = new Thread(() -> readErrorOutput(process.getErrorStream(), errorOutput));
+        errorReader.setDaemon(true);
+        errorReader.start();
+
+        boolean stopped = false;
+        try (InputStream in = process.getInputStream()) {
+            stopped = !readRecords(in, separator, consumer, outputBytes);
+        } catch (IOException e) {
+            throw new ScmException("Cannot read the output of " + Arrays.toString(command), e);
+        } finally {
+            if (stopped) {
+                process.destroy();
+            }
+        }
+
+        try {
+            int exitCode = process.waitFor();
+            errorReader.join();
+            if (!stopped && exitCode != 0) {
+                synchronized (errorOutput) {
+                    throw new ScmException(
+                            Arrays.toString(command) + " failed with exit code " + exitCode + ": " + errorOutput);
+                }
+            }
+            return stopped ? -1 : exitCode;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ScmException("Interrupted while waiting for " + Arrays.toString(command), e);
+        }
+    }
+
+    private static boolean readRecords(InputStream in, char separator, RecordConsumer consumer, long[] outputBytes)
+            throws IOException, ScmException {
+        byte[] buffer = new byte[8192];
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        int read;
+        while ((read = in.read(buffer)) > 0) {
+            outputBytes[0] += read;
+            int start = 0;
+            for (int i = 0; i < read; i++) {
+                if (buffer[i] == separator) {
+                    record.write(buffer, start, i - start);
+                    if (!consumer.consume(record.toString(StandardCharsets.UTF_8.name()))) {
+                        return false;
+                    }
+                    record.reset();
+                    start = i + 1;
+                }
+            }
+            record.write(buffer, start, read - start);
+        }
+        if (record.size() > 0) {
+            return consumer.consume(record.toString(StandardCharsets.UTF_8.name()));
+        }
+        return true;
+    }
+
+    private static void readErrorOutput(InputStream in, StringBuilder errorOutput) {
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            char[] buffer = new char[1024];
+            int read;
+            while ((read = reader.read(buffer)) > 0) {
+                synchronized (errorOutput) {
+                    errorOutput.append(buffer, 0, Math.min(read, MAX_ERROR_OUTPUT - errorOutput.length()));
+                }
+            }
+        } catch (IOException e) {
+            // the process ended, nothing more to read
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package org.codehaus.mojo.build;
+
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2015 Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+import java.lang.reflect.Method;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.plugin.MojoExecutionException;
+
+/**
+ * Runs independent SCM queries of one execution in the background, so their latencies do not add up. Uses virtual
+ * threads where the JVM supports them, and otherwise a small pool of daemon threads.
+ */
+final class ScmQueryExecutor implements AutoCloseable {
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+
+    private final ExecutorService executor;
+
+    private ScmQueryExecutor(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * @param maxThreads the maximum number of queries running at the same time
+     * @return a new executor, to be closed when the execution ends
+     */
+    static ScmQueryExecutor create(int maxThreads) {
+        ExecutorService virtualThreads = newVirtualThreadExecutor();
+        if (virtualThreads != null) {
+            // the caller submits no more than maxThreads queries
+            return new ScmQueryExecutor(virtualThreads);
+        }
+        ThreadFactory threadFactory = runnable -> {
+            Thread thread = new Thread(runnable, "buildnumber-scm-" + THREAD_NUMBER.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return new ScmQueryExecutor(Executors.newFixedThreadPool(maxThreads, threadFactory));
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method method = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) method.invoke(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // before Java 21
+            return null;
+        }
+    }
+
+    /**
+     * Start a query.
+     *
+     * @param query the query
+     * @return the pending result
+     */
+    <T> Future<T> submit(Callable<T> query) {
+        return executor.submit(query);
+    }
+
+    /**
+     * Wait for the result of a query, failing the same way as running the query in the current thread would.
+     *
+     * @param result the pending result
+     * @return the result
+     * @throws MojoExecutionException if the query failed
+     */
+    static <T> T get(Future<T> result) throws MojoExecutionException {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MojoExecutionException("Interrupted while waiting for the SCM", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof MojoExecutionException) {
+                throw (MojoExecutionException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new MojoExecutionException(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * Cancel the queries which are still running.
+     */
+    @Override
+    public void close() {
+        executor.shutdownNow();
+    }
+}
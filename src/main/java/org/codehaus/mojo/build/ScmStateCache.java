@@ -0,0 +1,197 @@
+package org.codehaus.mojo.build;
+
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2015 Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps SCM results between builds in a small properties file. The results are stored together with a fingerprint of
+ * the working copy, made of the sizes and modification times of the files the SCM rewrites on every commit, update or
+ * checkout. As long as the fingerprint matches, the results are still valid and the SCM need not be asked.
+ * <p>
+ * Local modifications do not change these files, so the status of the working copy must not be kept here.
+ */
+final class ScmStateCache {
+    private static final String FINGERPRINT = "fingerprint";
+
+    /**
+     * Guards reading and rewriting the cache files, as the queries of one execution may store their results at the
+     * same time.
+     */
+    private static final Object LOCK = new Object();
+
+    private final File file;
+
+    private final Properties entries = new Properties();
+
+    private ScmStateCache(File file) {
+        this.file = file;
+    }
+
+    /**
+     * Get the fingerprint of the working copy containing the given directory.
+     *
+     * @param directory a directory of the working copy
+     * @param scmType the SCM type as given in the connection url
+     * @return the fingerprint or <code>null</code> if it cannot be computed for this working copy
+     * @throws IOException if the files of the working copy cannot be read
+     */
+    static String fingerprint(File directory, String scmType) throws IOException {
+        List<File> stateFiles = getStateFiles(directory, scmType);
+        if (stateFiles.isEmpty()) {
+            return null;
+        }
+        StringBuilder fingerprint = new StringBuilder();
+        for (File stateFile : stateFiles) {
+            if (fingerprint.length() > 0) {
+                fingerprint.append(',');
+            }
+            fingerprint.append(stateFile.getName()).append(':');
+            try {
+                BasicFileAttributes attributes = Files.readAttributes(stateFile.toPath(), BasicFileAttributes.class);
+                fingerprint
+                        .append(attributes.size())
+                        .append(':')
+                        .append(attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS));
+            } catch (NoSuchFileException e) {
+                fingerprint.append('-');
+            }
+        }
+        return fingerprint.toString();
+    }
+
+    private static List<File> getStateFiles(File directory, String scmType) throws IOException {
+        if ("git".equals(scmType)) {
+            GitDirectory gitDirectory = GitDirectory.find(directory);
+            return gitDirectory != null ? gitDirectory.getStateFiles() : Collections.emptyList();
+        }
+        String marker;
+        List<String> names;
+        if ("hg".equals(scmType)) {
+            marker = ".hg";
+            names = Arrays.asList("dirstate", "branch");
+        } else if ("svn".equals(scmType)) {
+            marker = ".svn";
+            names = Collections.singletonList("wc.db");
+        } else {
+            return Collections.emptyList();
+        }
+        for (File dir = ScmCacheKey.canonical(directory); dir != null; dir = dir.getParentFile()) {
+            File metadata = new File(dir, marker);
+            if (metadata.isDirectory() && new File(metadata, names.get(0)).isFile()) {
+                File[] files = new File[names.size()];
+                for (int i = 0; i < files.length; i++) {
+                    files[i] = new File(metadata, names.get(i));
+                }
+                return Arrays.asList(files);
+            }
+        }
+        return Collections.emptyList();
+    }
+
+    /**
+     * Read the cache file. A missing or unreadable file gives an empty cache.
+     *
+     * @param file the cache file
+     * @return the cache
+     */
+    static ScmStateCache load(File file) {
+        ScmStateCache cache = new ScmStateCache(file);
+        synchronized (LOCK) {
+            cache.read();
+        }
+        return cache;
+    }
+
+    private void read() {
+        entries.clear();
+        if (file.isFile()) {
+            try (InputStream in = Files.newInputStream(file.toPath())) {
+                entries.load(in);
+            } catch (IOException | IllegalArgumentException e) {
+                entries.clear();
+            }
+        }
+    }
+
+    /**
+     * @param fingerprint the current fingerprint of the working copy
+     * @param id identifies the query
+     * @return the stored result or <code>null</code> if there is none for this state of the working copy
+     */
+    String get(String fingerprint, String id) {
+        return fingerprint.equals(entries.getProperty(FINGERPRINT)) ? entries.getProperty(id) : null;
+    }
+
+    /**
+     * Store a result, dropping all results of another state of the working copy.
+     *
+     * @param fingerprint the fingerprint of the working copy, taken before the query was run
+     * @param id identifies the query
+     * @param value the result
+     * @throws IOException if the cache file cannot be written
+     */
+    void put(String fingerprint, String id, String value) throws IOException {
+        synchronized (LOCK) {
+            // keep the results stored since this cache was loaded
+            read();
+            write(fingerprint, id, value);
+        }
+    }
+
+    private void write(String fingerprint, String id, String value) throws IOException {
+        if (!fingerprint.equals(entries.getProperty(FINGERPRINT))) {
+            entries.clear();
+            entries.setProperty(FINGERPRINT, fingerprint);
+        }
+        entries.setProperty(id, value);
+
+        Path target = file.toPath();
+        Files.createDirectories(target.getParent());
+        Path temp = Files.createTempFile(target.getParent(), file.getName(), ".tmp");
+        try {
+            try (OutputStream out = Files.newOutputStream(temp)) {
+                entries.store(out, "SCM results of the buildnumber-maven-plugin. Do not modify");
+            }
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp);
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package org.codehaus.mojo.build;
+
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2015 Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+import org.eclipse.aether.RepositorySystemSession;
+import org.eclipse.aether.SessionData;
+
+/**
+ * Holds values which are computed once and then shared by every execution of this plugin within one
+ * {@link MavenSession}, e.g. SCM results of a working copy used by all modules of a reactor.
+ * <p>
+ * The cache is stored in the data of the repository session, so it lives exactly as long as the Maven session.
+ */
+final class SessionCache {
+    /**
+     * The class itself is used as key, so different versions of this plugin in one build do not share a cache.
+     */
+    private static final Object SESSION_DATA_KEY = SessionCache.class;
+
+    private static final Object NULL_VALUE = new Object();
+
+    private final ConcurrentMap<Object, Object> values = new ConcurrentHashMap<>();
+
+    private final AtomicInteger hits = new AtomicInteger();
+
+    private final AtomicInteger misses = new AtomicInteger();
+
+    /**
+     * The computations the threads wait for, to find a thread waiting for itself.
+     */
+    private final ConcurrentMap<Thread, Computation> waiting = new ConcurrentHashMap<>();
+
+    /**
+     * Computes a value which may be cached.
+     *
+     * @param <T> the type of the value
+     * @param <E> the exception thrown when the value cannot be computed
+     */
+    interface Loader<T, E extends Exception> {
+        T load() throws E;
+    }
+
+    /**
+     * Get the cache of the given session, creating it on first access. Without a session (e.g. in unit tests) a new,
+     * unshared cache is returned.
+     *
+     * @param session the maven session, may be <code>null</code>
+     * @return the cache, never <code>null</code>
+     */
+    static SessionCache of(MavenSession session) {
+        RepositorySystemSession repositorySession = session != null ? session.getRepositorySession() : null;
+        if (repositorySession == null) {
+            return new SessionCache();
+        }
+
+        SessionData data = repositorySession.getData();
+        Object cache = data.get(SESSION_DATA_KEY);
+        while (cache == null) {
+            data.set(SESSION_DATA_KEY, null, new SessionCache());
+            cache = data.get(SESSION_DATA_KEY);
+        }
+        return (SessionCache) cache;
+    }
+
+    /**
+     * Get the value for the given key, computing it with the loader when it is not cached yet. Each value is computed
+     * once: concurrent lookups of the same key, e.g. by the modules of a parallel build, wait for the computation
+     * already running and then share its result. Failures are not cached, so a lookup which waited for a failed
+     * computation tries again with its own loader, as does the next lookup.
+     * <p>
+     * A lookup made while computing the same value, in the same thread or in another thread which waits for this one,
+     * runs the loader right away, as waiting would never end.
+     *
+     * @param key the key, must implement <code>equals</code> and <code>hashCode</code>
+     * @param loader computes the value on a cache miss
+     * @param log used to report hits and misses at debug level
+     * @return the cached or computed value, may be <code>null</code>
+     * @throws E if the value has to be computed and the loader fails
+     */
+    @SuppressWarnings("unchecked")
+    <T, E extends Exception> T get(Object key, Loader<T, E> loader, Log log) throws E {
+        while (true) {
+            Object value = values.get(key);
+            if (value == null) {
+                Computation computation = new Computation();
+                value = values.putIfAbsent(key, computation);
+                if (value == null) {
+                    int missCount = misses.incrementAndGet();
+                    if (log.isDebugEnabled()) {
+                        log.debug("Session cache miss for " + key + " (hits: " + hits.get() + ", misses: " + missCount
+                                + ")");
+                    }
+                    return (T) computation.run(key, loader);
+                }
+            }
+
+            if (value instanceof Computation) {
+                Computation computation = (Computation) value;
+                if (!computation.await()) {
+                    if (computation.done.getCount() > 0) {
+                        // computing the value needs itself, waiting would never end
+                        return loader.load();
+                    }
+                    continue;
+                }
+                value = computation.value;
+            }
+
+            int hitCount = hits.incrementAndGet();
+            if (log.isDebugEnabled()) {
+                log.debug("Session cache hit for " + key + " (hits: " + hitCount + ", misses: " + misses.get() + ")");
+            }
+            return value == NULL_VALUE ? null : (T) value;
+        }
+    }
+
+    /**
+     * Get the value for the given key without computing it.
+     *
+     * @param key the key
+     * @return the cached value or <code>null</code> if there is none
+     */
+    @SuppressWarnings("unchecked")
+    <T> T peek(Object key) {
+        Object value = values.get(key);
+        return value == NULL_VALUE || value instanceof Computation ? null : (T) value;
+    }
+
+    /**
+     * A value being computed. It stands in the cache until the computation ends, so concurrent lookups can wait for it.
+     */
+    private final class Computation {
+        private final Thread thread = Thread.currentThread();
+
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        private Object value;
+
+        private <E extends Exception> Object run(Object key, Loader<?, E> loader) throws E {
+            try {
+                Object loaded = loader.load();
+                value = loaded != null ? loaded : NULL_VALUE;
+                values.replace(key, this, value);
+                return loaded;
+            } catch (Exception | Error e) {
+                values.remove(key, this);
+                throw e;
+            } finally {
+                done.countDown();
+            }
+        }
+
+        /**
+         * Wait for the computation to end, unless it waits for the current thread.
+         *
+         * @return whether the value was computed, <code>false</code> if the computation failed or waits for the
+         *     current thread
+         */
+        private boolean await() {
+            Thread current = Thread.currentThread();
+            waiting.put(current, this);
+            try {
+                if (waitsFor(current)) {
+                    return false;
+                }
+                boolean interrupted = false;
+                while (true) {
+                    try {
+                        done.await();
+                        break;
+                    } catch (InterruptedException e) {
+                        // like a computation in the current thread, the computation of another one is not interrupted
+                        interrupted = true;
+                    }
+                }
+                if (interrupted) {
+                    current.interrupt();
+                }
+                return value != null;
+            } finally {
+                waiting.remove(current);
+            }
+        }
+
+        /**
+         * Follow the threads computing the values which are waited for, starting with this computation. The thread
+         * which registers last of a cycle is the one to see it.
+         */
+        private boolean waitsFor(Thread current) {
+            Computation computation = this;
+            for (int i = 0; computation != null && i <= waiting.size(); i++) {
+                if (computation.thread == current) {
+                    return true;
+                }
+                computation = waiting.get(computation.thread);
+            }
+            return false;
+        }
+    }
+
+    int getHits() {
+        return hits.get();
+    }
+
+    int getMisses() {
+        return misses.get();
+    }
+}
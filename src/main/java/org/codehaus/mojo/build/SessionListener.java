@@ -0,0 +1,221 @@
+package org.codehaus.mojo.build;
+
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2015 Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BiConsumer;
+
+import org.apache.maven.execution.AbstractExecutionListener;
+import org.apache.maven.execution.ExecutionEvent;
+import org.apache.maven.execution.ExecutionListener;
+import org.apache.maven.execution.MavenExecutionRequest;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.project.MavenProject;
+
+/**
+ * Runs actions before a goal of a project starts or when the session ends, e.g. to release what the goals keep for
+ * the whole session, even if the plugin is not loaded as an extension. It replaces the execution listener of the
+ * request and forwards all events to the one Maven set up.
+ */
+final class SessionListener implements ExecutionListener {
+    private final ExecutionListener delegate;
+
+    private final List<BiConsumer<MavenProject, List<MojoExecution>>> mojoActions = new CopyOnWriteArrayList<>();
+
+    private final List<Runnable> endActions = new CopyOnWriteArrayList<>();
+
+    private SessionListener(ExecutionListener delegate) {
+        this.delegate = delegate != null ? delegate : new AbstractExecutionListener();
+    }
+
+    /**
+     * Run the action whenever a goal or a forked lifecycle starts, before the goal is configured. For a forked
+     * lifecycle, which runs on a copy of the project, the action gets all goals of the fork.
+     *
+     * @param session the maven session
+     * @param log logs the installation of the listener
+     * @param action the action, receiving the project and the goals about to start
+     * @return <code>false</code> if the session has no request to listen to, so the action will not run
+     */
+    static boolean beforeMojo(MavenSession session, Log log, BiConsumer<MavenProject, List<MojoExecution>> action) {
+        SessionListener listener = get(session, log);
+        if (listener == null) {
+            return false;
+        }
+        listener.mojoActions.add(action);
+        return true;
+    }
+
+    /**
+     * Run the action when the session ends.
+     *
+     * @param session the maven session
+     * @param log logs the installation of the listener
+     * @param action the action
+     * @return <code>false</code> if the session has no request to listen to, so the action will not run
+     */
+    static boolean atSessionEnd(MavenSession session, Log log, Runnable action) {
+        SessionListener listener = get(session, log);
+        if (listener == null) {
+            return false;
+        }
+        listener.endActions.add(action);
+        return true;
+    }
+
+    private static SessionListener get(MavenSession session, Log log) {
+        return SessionCache.of(session).get(SessionListener.class, () -> install(session), log);
+    }
+
+    private static SessionListener install(MavenSession session) {
+        MavenExecutionRequest request = session != null ? session.getRequest() : null;
+        if (request == null) {
+            return null;
+        }
+        SessionListener listener = new SessionListener(request.getExecutionListener());
+        request.setExecutionListener(listener);
+        return listener;
+    }
+
+    private void beforeMojo(ExecutionEvent event, boolean fork) {
+        MavenProject project = event.getProject();
+        if (project != null) {
+            List<MojoExecution> executions = new ArrayList<>();
+            if (fork) {
+                addForkedExecutions(event.getMojoExecution(), executions);
+            } else if (event.getMojoExecution() != null) {
+                executions.add(event.getMojoExecution());
+            }
+            List<MojoExecution> started = Collections.unmodifiableList(executions);
+            mojoActions.forEach(action -> action.accept(project, started));
+        }
+    }
+
+    private static void addForkedExecutions(MojoExecution execution, List<MojoExecution> executions) {
+        if (execution == null) {
+            return;
+        }
+        for (List<MojoExecution> forked : execution.getForkedExecutions().values()) {
+            for (MojoExecution forkedExecution : forked) {
+                executions.add(forkedExecution);
+                addForkedExecutions(forkedExecution, executions);
+            }
+        }
+    }
+
+    @Override
+    public void sessionEnded(ExecutionEvent event) {
+        try {
+            delegate.sessionEnded(event);
+        } finally {
+            endActions.forEach(Runnable::run);
+            endActions.clear();
+            mojoActions.clear();
+        }
+    }
+
+    @Override
+    public void projectDiscoveryStarted(ExecutionEvent event) {
+        delegate.projectDiscoveryStarted(event);
+    }
+
+    @Override
+    public void sessionStarted(ExecutionEvent event) {
+        delegate.sessionStarted(event);
+    }
+
+    @Override
+    public void projectSkipped(ExecutionEvent event) {
+        delegate.projectSkipped(event);
+    }
+
+    @Override
+    public void projectStarted(ExecutionEvent event) {
+        delegate.projectStarted(event);
+    }
+
+    @Override
+    public void projectSucceeded(ExecutionEvent event) {
+        delegate.projectSucceeded(event);
+    }
+
+    @Override
+    public void projectFailed(ExecutionEvent event) {
+        delegate.projectFailed(event);
+    }
+
+    @Override
+    public void mojoSkipped(ExecutionEvent event) {
+        delegate.mojoSkipped(event);
+    }
+
+    @Override
+    public void mojoStarted(ExecutionEvent event) {
+        delegate.mojoStarted(event);
+        beforeMojo(event, false);
+    }
+
+    @Override
+    public void mojoSucceeded(ExecutionEvent event) {
+        delegate.mojoSucceeded(event);
+    }
+
+    @Override
+    public void mojoFailed(ExecutionEvent event) {
+        delegate.mojoFailed(event);
+    }
+
+    @Override
+    public void forkStarted(ExecutionEvent event) {
+        delegate.forkStarted(event);
+        beforeMojo(event, true);
+    }
+
+    @Override
+    public void forkSucceeded(ExecutionEvent event) {
+        delegate.forkSucceeded(event);
+    }
+
+    @Override
+    public void forkFailed(ExecutionEvent event) {
+        delegate.forkFailed(event);
+    }
+
+    @Override
+    public void forkedProjectStarted(ExecutionEvent event) {
+        delegate.forkedProjectStarted(event);
+    }
+
+    @Override
+    public void forkedProjectSucceeded(ExecutionEvent event) {
+        delegate.forkedProjectSucceeded(event);
+    }
+
+    @Override
+    public void forkedProjectFailed(ExecutionEvent event) {
+        delegate.forkedProjectFailed(event);
+    }
+}
@@ -0,0 +1,202 @@
+package org.codehaus.mojo.build;
+
+/**
+ * The MIT License
+ *
+ * Copyright (c) 2015 Codehaus
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and
+ * associated documentation files (the "Software"), to deal in the Software without restriction,
+ * including without limitation the rights to use, copy, modify, merge, publish, distribute,
+ * sublicense, and/or sell copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or
+ * substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT
+ * NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND
+ * NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM,
+ * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ */
+import java.text.SimpleDateFormat;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DecimalStyle;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Formats timestamps with {@link SimpleDateFormat} patterns, reusing the formatter of each pattern, time zone and
+ * locale.
+ * <p>
+ * Patterns are translated to an equivalent, thread-safe {@link DateTimeFormatter}. Patterns using a letter whose
+ * meaning differs between the two, like <code>u</code> or <code>S</code> other than <code>SSS</code>, or eras, whose
+ * names differ in some locales, and locales with another calendar than the gregorian one keep using a
+ * {@link SimpleDateFormat}, which is copied for each use.
+ */
+final class TimestampFormats {
+    /**
+     * Formats a date.
+     */
+    interface TimestampFormat {
+        String format(Date date);
+    }
+
+    private static final ConcurrentMap<List<Object>, TimestampFormat> FORMATS = new ConcurrentHashMap<>();
+
+    private TimestampFormats() {}
+
+    /**
+     * Get the format for the given pattern, time zone and locale.
+     *
+     * @param pattern a {@link SimpleDateFormat} pattern
+     * @param timeZone the time zone
+     * @param locale the locale
+     * @return the format, shared by all threads
+     * @throws IllegalArgumentException if the pattern is invalid
+     */
+    static TimestampFormat get(String pattern, TimeZone timeZone, Locale locale) {
+        List<Object> key = Arrays.asList(pattern, timeZone.getID(), locale);
+        TimestampFormat format = FORMATS.get(key);
+        if (format == null) {
+            format = create(pattern, timeZone, locale);
+            TimestampFormat previous = FORMATS.putIfAbsent(key, format);
+            if (previous != null) {
+                format = previous;
+            }
+        }
+        return format;
+    }
+
+    private static TimestampFormat create(String pattern, TimeZone timeZone, Locale locale) {
+        String dateTimePattern = toDateTimePattern(pattern);
+        if (dateTimePattern != null
+                && "gregory".equals(Calendar.getInstance(timeZone, locale).getCalendarType())) {
+            DateTimeFormatter formatter = DateTimeFormatter.ofPattern(dateTimePattern, locale)
+                    .withDecimalStyle(DecimalStyle.of(locale))
+                    .withZone(timeZone.toZoneId());
+            return date -> formatter.format(date.toInstant());
+        }
+
+        final SimpleDateFormat prototype = new SimpleDateFormat(pattern, locale);
+        prototype.setTimeZone(timeZone);
+        return date -> ((SimpleDateFormat) prototype.clone()).format(date);
+    }
+
+    /**
+     * Translate a {@link SimpleDateFormat} pattern to a {@link DateTimeFormatter} pattern giving the same result.
+     *
+     * @param pattern the {@link SimpleDateFormat} pattern
+     * @return the {@link DateTimeFormatter} pattern, or <code>null</code> if there is none
+     */
+    static String toDateTimePattern(String pattern) {
+        StringBuilder result = new StringBuilder();
+        // literal text is quoted as a whole, as two quoted parts in a row would form a quote
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < pattern.length()) {
+            char c = pattern.charAt(i);
+            if (c == '\'') {
+                StringBuilder text = new StringBuilder();
+                int end = i + 1;
+                if (end < pattern.length() && pattern.charAt(end) == '\'') {
+                    // a quote outside of quoted text
+                    text.append('\'');
+                } else {
+                    while (true) {
+                        if (end == pattern.length()) {
+                            // unterminated quote
+                            return null;
+                        }
+                        if (pattern.charAt(end) == '\'') {
+                            if (end + 1 < pattern.length() && pattern.charAt(end + 1) == '\'') {
+                                text.append('\'');
+                                end++;
+                            } else {
+                                break;
+                            }
+                        } else {
+                            text.append(pattern.charAt(end));
+                        }
+                        end++;
+                    }
+                }
+                literal.append(text);
+                i = end + 1;
+            } else if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')) {
+                int count = 1;
+                while (i + count < pattern.length() && pattern.charAt(i + count) == c) {
+                    count++;
+                }
+                String letters = toDateTimeLetters(c, count);
+                if (letters == null) {
+                    return null;
+                }
+                appendLiteral(result, literal);
+                result.append(letters);
+                i += count;
+            } else {
+                // DateTimeFormatter reserves some characters which SimpleDateFormat prints as they are
+                literal.append(c);
+                i++;
+            }
+        }
+        appendLiteral(result, literal);
+        return result.toString();
+    }
+
+    private static void appendLiteral(StringBuilder result, StringBuilder literal) {
+        if (literal.length() > 0) {
+            result.append('\'').append(literal.toString().replace("'", "''")).append('\'');
+            literal.setLength(0);
+        }
+    }
+
+    private static String toDateTimeLetters(char letter, int count) {
+        switch (letter) {
+            case 'y':
+                return repeat(letter, count);
+            case 'M':
+                return repeat(letter, Math.min(count, 4));
+            case 'E':
+                return count < 4 ? "E" : "EEEE";
+            case 'd':
+            case 'H':
+            case 'h':
+            case 'K':
+            case 'k':
+            case 'm':
+            case 's':
+                return count <= 2 ? repeat(letter, count) : null;
+            case 'D':
+                return count <= 3 ? repeat(letter, count) : null;
+            case 'S':
+                // SimpleDateFormat prints milliseconds, DateTimeFormatter a fraction of the second
+                return count == 3 ? "SSS" : null;
+            case 'a':
+                return "a";
+            case 'z':
+                return count < 4 ? "z" : "zzzz";
+            case 'Z':
+                return "Z";
+            case 'X':
+                // a single X prints the minutes of the offset with DateTimeFormatter
+                return count == 2 || count == 3 ? repeat(letter, count) : null;
+            default:
+                return null;
+        }
+    }
+
+    private static String repeat(char letter, int count) {
+        char[] letters = new char[count];
+        Arrays.fill(letters, letter);
+        return new String(letters);
+    }
+}
@@ -20,14 +20,23 @@ package org.codehaus.mojo.build;
  * DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  */
-import java.text.SimpleDateFormat;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.Locale;
 import java.util.TimeZone;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
 import org.apache.commons.lang.StringUtils;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
 
 public class Utils {
+    private static final Object BUILD_TIME_KEY = "build time";
+
+    private static final Pattern MESSAGE_FORMAT_DATE = Pattern.compile("\\{0,date,([^\\}]+)\\}");
+
     private Utils() {}
 
     public static String createTimestamp(String timestampFormat, String timeZoneId) {
@@ -40,12 +49,67 @@ public class Utils {
         if (StringUtils.isBlank(timestampFormat)) {
             return String.valueOf(now.getTime());
         } else {
-            SimpleDateFormat dateFormat = new SimpleDateFormat(timestampFormat);
-            dateFormat.setTimeZone(getTimeZone(timeZoneId));
-            return dateFormat.format(now);
+            return TimestampFormats.get(
+                            timestampFormat, getTimeZone(timeZoneId), Locale.getDefault(Locale.Category.FORMAT))
+                    .format(now);
         }
     }
 
+    /**
+     * Get the time of this build. It is taken once per session, so all goals and modules of a build use the same time.
+     *
+     * @param session the maven session, may be <code>null</code>
+     * @param log the log
+     * @return the time of the build
+     */
+    static Date getBuildTime(MavenSession session, Log log) {
+        return SessionCache.of(session)
+                .get(BUILD_TIME_KEY, () -> Calendar.getInstance().getTime(), log);
+    }
+
+    /**
+     * Format the {@link #getBuildTime(MavenSession, Log) time of this build}, once per session for each format and time
+     * zone.
+     *
+     * @param session the maven session, may be <code>null</code>
+     * @param timestampFormat the java.text.SimpleDateFormat pattern, if blank the milliseconds since the epoch are used
+     * @param timeZoneId the time zone, if blank the default time zone is used
+     * @param log the log
+     * @return the formatted time
+     */
+    static String createTimestamp(MavenSession session, String timestampFormat, String timeZoneId, Log log) {
+        return createTimestamp(session, timestampFormat, timeZoneId, getBuildTime(session, log), log);
+    }
+
+    /**
+     * Format the given time, once per session for each format and time zone.
+     *
+     * @param session the maven session, may be <code>null</code>
+     * @param timestampFormat the java.text.SimpleDateFormat pattern, if blank the milliseconds since the epoch are used
+     * @param timeZoneId the time zone, if blank the default time zone is used
+     * @param now the time
+     * @param log the log
+     * @return the formatted time
+     */
+    static String createTimestamp(MavenSession session, String timestampFormat, String timeZoneId, Date now, Log log) {
+        return SessionCache.of(session)
+                .get(
+                        Arrays.asList("timestamp", timestampFormat, timeZoneId, now.getTime()),
+                        () -> createTimestamp(timestampFormat, timeZoneId, now),
+                        log);
+    }
+
+    /**
+     * Get the java.text.SimpleDateFormat pattern of a java.text.MessageFormat like <code>{0,date,yyyy-MM-dd}</code>.
+     *
+     * @param timestampFormat the format
+     * @return the pattern, or <code>null</code> if the format is no java.text.MessageFormat
+     */
+    static String getMessageFormatDatePattern(String timestampFormat) {
+        Matcher matcher = MESSAGE_FORMAT_DATE.matcher(timestampFormat);
+        return matcher.matches() ? matcher.group(1) : null;
+    }
+
     private static TimeZone getTimeZone(String timeZoneId) {
         TimeZone timeZone = TimeZone.getDefault();
         if (StringUtils.isNotBlank(timeZoneId)) {
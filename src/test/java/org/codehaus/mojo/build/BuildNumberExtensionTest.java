@@ -0,0 +1,91 @@
+package org.codehaus.mojo.build;
+
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class BuildNumberExtensionTest {
+    @Test
+    public void usesDeclaredPlugin() {
+        Plugin plugin = newPlugin("3.2.0");
+        Model model = new Model();
+        model.setBuild(new Build());
+        model.getBuild().addPlugin(plugin);
+
+        assertSame(plugin, BuildNumberExtension.getPlugin(new MavenProject(model), "3.3.1"));
+    }
+
+    @Test
+    public void usesOwnVersionWithoutDeclaredPlugin() {
+        Model model = new Model();
+        model.setBuild(new Build());
+
+        Plugin plugin = BuildNumberExtension.getPlugin(new MavenProject(model), "3.3.1");
+
+        assertEquals(
+                BuildNumberExtension.PLUGIN_GROUP_ID + ":" + BuildNumberExtension.PLUGIN_ARTIFACT_ID, plugin.getKey());
+        assertEquals("3.3.1", plugin.getVersion());
+    }
+
+    @Test
+    public void runsFirstCreateExecution() {
+        Plugin plugin = newPlugin("3.3.1");
+        plugin.addExecution(newExecution("metadata", "create-metadata"));
+        plugin.addExecution(newExecution("buildnumber", "create"));
+
+        assertEquals(
+                "org.codehaus.mojo:buildnumber-maven-plugin:3.3.1:create@buildnumber",
+                BuildNumberExtension.getTask(plugin));
+    }
+
+    @Test
+    public void runsOwnExecutionWithoutCreateExecution() {
+        assertEquals(
+                "org.codehaus.mojo:buildnumber-maven-plugin:3.3.1:create@buildnumber-extension",
+                BuildNumberExtension.getTask(newPlugin("3.3.1")));
+    }
+
+    @Test
+    public void setsRevisionOnlyOnce() throws ReflectiveOperationException {
+        Xpp3Dom configuration = new Xpp3Dom("configuration");
+        Xpp3Dom getRevisionOnlyOnce = new Xpp3Dom("getRevisionOnlyOnce");
+        getRevisionOnlyOnce.setValue("${maven.buildNumber.getRevisionOnlyOnce}");
+        configuration.addChild(getRevisionOnlyOnce);
+
+        BuildNumberExtension.setRevisionOnlyOnce(configuration);
+
+        assertEquals(1, configuration.getChildCount());
+        assertEquals("true", configuration.getChild("getRevisionOnlyOnce").getValue());
+    }
+
+    @Test
+    public void addsRevisionOnlyOnce() throws ReflectiveOperationException {
+        Xpp3Dom configuration = new Xpp3Dom("configuration");
+
+        BuildNumberExtension.setRevisionOnlyOnce(configuration);
+
+        assertEquals("true", configuration.getChild("getRevisionOnlyOnce").getValue());
+    }
+
+    private static Plugin newPlugin(String version) {
+        Plugin plugin = new Plugin();
+        plugin.setGroupId(BuildNumberExtension.PLUGIN_GROUP_ID);
+        plugin.setArtifactId(BuildNumberExtension.PLUGIN_ARTIFACT_ID);
+        plugin.setVersion(version);
+        return plugin;
+    }
+
+    private static PluginExecution newExecution(String id, String goal) {
+        PluginExecution execution = new PluginExecution();
+        execution.setId(id);
+        execution.addGoal(goal);
+        return execution;
+    }
+}
@@ -0,0 +1,124 @@
+package org.codehaus.mojo.build;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BuildNumberServiceTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private LocalCounterServer server;
+
+    @Before
+    public void startServer() throws IOException {
+        server = LocalCounterServer.start();
+    }
+
+    @After
+    public void stopServer() {
+        server.close();
+    }
+
+    @Test
+    public void handsOutLeasedNumbers() throws Exception {
+        File leaseFile = new File(folder.getRoot(), "leases.properties");
+
+        for (int i = 1; i <= 7; i++) {
+            BuildNumberService service = new BuildNumberService(server.getUrl(), 3, leaseFile);
+            assertArrayEquals(new int[] {i}, service.next(Collections.singletonList("buildNumber")));
+        }
+        assertEquals(3, server.getLeases());
+    }
+
+    @Test
+    public void incrementsEveryOccurrence() throws Exception {
+        BuildNumberService service =
+                new BuildNumberService(server.getUrl() + "/", 10, new File(folder.getRoot(), "leases.properties"));
+
+        assertArrayEquals(
+                new int[] {1, 1, 2}, service.next(Arrays.asList("buildNumber0", "buildNumber1", "buildNumber0")));
+        assertEquals(2, server.getLeases());
+    }
+
+    @Test
+    public void machinesUseOwnBlocks() throws Exception {
+        BuildNumberService first = new BuildNumberService(server.getUrl(), 100, new File(folder.getRoot(), "a"));
+        BuildNumberService second = new BuildNumberService(server.getUrl(), 100, new File(folder.getRoot(), "b"));
+        List<String> keys = Collections.singletonList("buildNumber");
+
+        assertArrayEquals(new int[] {1}, first.next(keys));
+        assertArrayEquals(new int[] {101}, second.next(keys));
+        assertArrayEquals(new int[] {2}, first.next(keys));
+        assertArrayEquals(new int[] {102}, second.next(keys));
+    }
+
+    @Test
+    public void reportsFailingService() throws Exception {
+        server.setFailureStatus(500);
+        BuildNumberService service =
+                new BuildNumberService(server.getUrl(), 100, new File(folder.getRoot(), "leases.properties"));
+
+        try {
+            service.next(Collections.singletonList("buildNumber"));
+            fail("expected an IOException");
+        } catch (IOException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("500"));
+        }
+    }
+
+    @Test
+    public void concurrentMachinesGetUniqueNumbers() throws Exception {
+        final int machines = 4;
+        final int threads = 4;
+        final int builds = 25;
+        final int leaseSize = 10;
+        final Set<Integer> numbers = ConcurrentHashMap.newKeySet();
+
+        ExecutorService executor = Executors.newFixedThreadPool(machines * threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int m = 0; m < machines; m++) {
+                final File leaseFile = new File(folder.getRoot(), "machine" + m + "/leases.properties");
+                for (int t = 0; t < threads; t++) {
+                    futures.add(executor.submit(() -> {
+                        List<String> keys = Collections.singletonList("buildNumber");
+                        for (int b = 0; b < builds; b++) {
+                            int number = new BuildNumberService(server.getUrl(), leaseSize, leaseFile).next(keys)[0];
+                            assertTrue("duplicate build number " + number, numbers.add(number));
+                        }
+                        return null;
+                    }));
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(machines * threads * builds, numbers.size());
+        assertEquals(machines * threads * builds / leaseSize, server.getLeases());
+    }
+}
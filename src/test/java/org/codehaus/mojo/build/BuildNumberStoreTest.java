@@ -0,0 +1,196 @@
+package org.codehaus.mojo.build;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BuildNumberStoreTest {
+    private static final int THREADS = 8;
+
+    private static final int INCREMENTS = 50;
+
+    private static final int PROCESSES = 2;
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void incrementsEveryOccurrence() throws Exception {
+        File file = new File(folder.getRoot(), "target/buildNumber.properties");
+
+        assertArrayEquals(
+                new int[] {1, 1, 2},
+                BuildNumberStore.increment(file, Arrays.asList("buildNumber0", "buildNumber1", "buildNumber0")));
+        assertArrayEquals(new int[] {3}, BuildNumberStore.increment(file, Collections.singletonList("buildNumber0")));
+
+        Properties properties = load(file);
+        assertEquals("3", properties.getProperty("buildNumber0"));
+        assertEquals("1", properties.getProperty("buildNumber1"));
+    }
+
+    @Test
+    public void keepsOtherProperties() throws Exception {
+        File file = folder.newFile("buildNumber.properties");
+        Files.write(file.toPath(), Arrays.asList("buildNumber=41", "other=value"));
+
+        assertArrayEquals(new int[] {42}, BuildNumberStore.increment(file, Collections.singletonList("buildNumber")));
+
+        Properties properties = load(file);
+        assertEquals("42", properties.getProperty("buildNumber"));
+        assertEquals("value", properties.getProperty("other"));
+    }
+
+    @Test
+    public void keepsLockOutOfBuildAndSourceDirectories() throws Exception {
+        File file = new File(folder.getRoot(), "buildNumber.properties");
+
+        BuildNumberStore.increment(file, Collections.singletonList("buildNumber"));
+
+        assertEquals(
+                Collections.singletonList("buildNumber.properties"),
+                Arrays.asList(folder.getRoot().list((d, n) -> n.startsWith("buildNumber"))));
+        File lockFile = BuildNumberStore.getLockFile(file);
+        assertTrue(lockFile.exists());
+        assertEquals(BuildNumberStore.LOCK_DIRECTORY, lockFile.getParentFile());
+        // the same file reached through another path has the same lock
+        assertEquals(
+                lockFile, BuildNumberStore.getLockFile(new File(folder.getRoot(), "target/../buildNumber.properties")));
+        assertNotEquals(
+                lockFile, BuildNumberStore.getLockFile(new File(folder.getRoot(), "other/buildNumber.properties")));
+    }
+
+    @Test
+    public void writesFileWithDefaultPermissions() throws Exception {
+        Assume.assumeTrue(FileSystems.getDefault().supportedFileAttributeViews().contains("posix"));
+        File file = new File(folder.getRoot(), "buildNumber.properties");
+        File reference = folder.newFile("reference.properties");
+
+        BuildNumberStore.increment(file, Collections.singletonList("buildNumber"));
+
+        assertEquals(Files.getPosixFilePermissions(reference.toPath()), Files.getPosixFilePermissions(file.toPath()));
+    }
+
+    @Test
+    public void rejectsCounterWhichIsNoNumber() throws Exception {
+        File file = folder.newFile("buildNumber.properties");
+        Files.write(file.toPath(), Collections.singletonList("buildNumber=abc"));
+
+        try {
+            BuildNumberStore.increment(file, Collections.singletonList("buildNumber"));
+            fail("expected a NumberFormatException");
+        } catch (NumberFormatException e) {
+            assertEquals("abc", e.getMessage());
+        }
+        assertEquals("abc", load(file).getProperty("buildNumber"));
+    }
+
+    @Test
+    public void concurrentWritersLoseNoUpdate() throws Exception {
+        final File file = new File(folder.getRoot(), "buildNumber.properties");
+        final Set<Integer> buildNumbers = ConcurrentHashMap.newKeySet();
+        final CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<?>> writers = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                writers.add(executor.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < INCREMENTS; i++) {
+                        int[] values = BuildNumberStore.increment(file, Arrays.asList("buildNumber", "buildNumber1"));
+                        assertTrue("duplicate build number " + values[0], buildNumbers.add(values[0]));
+                    }
+                    return null;
+                }));
+            }
+
+            start.countDown();
+            for (Future<?> writer : writers) {
+                writer.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        int total = THREADS * INCREMENTS;
+        assertEquals(total, buildNumbers.size());
+        Properties properties = load(file);
+        assertEquals(String.valueOf(total), properties.getProperty("buildNumber"));
+        assertEquals(String.valueOf(total), properties.getProperty("buildNumber1"));
+    }
+
+    @Test
+    public void concurrentProcessesLoseNoUpdate() throws Exception {
+        File file = new File(folder.getRoot(), "buildNumber.properties");
+        String java = new File(System.getProperty("java.home"), "bin/java").getPath();
+
+        List<Process> processes = new ArrayList<>();
+        for (int p = 0; p < PROCESSES; p++) {
+            processes.add(new ProcessBuilder(
+                            java,
+                            "-cp",
+                            System.getProperty("java.class.path"),
+                            BuildNumberStoreTest.class.getName(),
+                            file.getPath(),
+                            String.valueOf(INCREMENTS))
+                    .inheritIO()
+                    .start());
+        }
+        // this JVM competes with the other processes
+        for (int i = 0; i < INCREMENTS; i++) {
+            BuildNumberStore.increment(file, Collections.singletonList("buildNumber"));
+        }
+        for (Process process : processes) {
+            assertTrue(process.waitFor(1, TimeUnit.MINUTES));
+            assertEquals(0, process.exitValue());
+        }
+
+        assertEquals(String.valueOf((PROCESSES + 1) * INCREMENTS), load(file).getProperty("buildNumber"));
+    }
+
+    /**
+     * Increments the build number of a file from another process.
+     *
+     * @param args the properties file and the number of increments
+     * @throws Exception if the file cannot be updated
+     */
+    public static void main(String[] args) throws Exception {
+        File file = new File(args[0]);
+        int increments = Integer.parseInt(args[1]);
+        for (int i = 0; i < increments; i++) {
+            BuildNumberStore.increment(file, Collections.singletonList("buildNumber"));
+        }
+    }
+
+    private static Properties load(File file) throws Exception {
+        Properties properties = new Properties();
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            properties.load(in);
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,95 @@
+package org.codehaus.mojo.build;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BuildNumberTemplateTest {
+    private final Log log = new SystemStreamLog();
+
+    @Test
+    public void classifiesItems() {
+        BuildNumberTemplate template = BuildNumberTemplate.compile(
+                "{0}", Locale.US, Arrays.asList("timestamp", "scmVersion", "buildNumber1", "other", 7));
+
+        List<BuildNumberTemplate.Item> items = template.getItems();
+        assertEquals(BuildNumberTemplate.Kind.TIMESTAMP, items.get(0).getKind());
+        assertEquals(BuildNumberTemplate.Kind.SCM_VERSION, items.get(1).getKind());
+        assertEquals(BuildNumberTemplate.Kind.BUILD_NUMBER, items.get(2).getKind());
+        assertEquals("buildNumber1", items.get(2).getValue());
+        assertEquals(BuildNumberTemplate.Kind.VALUE, items.get(3).getKind());
+        assertEquals(BuildNumberTemplate.Kind.VALUE, items.get(4).getKind());
+        assertEquals(7, items.get(4).getValue());
+    }
+
+    @Test
+    public void formatsWithLocale() {
+        BuildNumberTemplate template =
+                BuildNumberTemplate.compile("{0,number}-{1,date,yyyy}", Locale.GERMANY, Arrays.asList(1, 2));
+
+        assertEquals("1.234-1970", template.format(new Object[] {1234, new Date(0)}));
+    }
+
+    @Test
+    public void parsesLocale() {
+        assertEquals(new Locale("de"), BuildNumberTemplate.parseLocale("de"));
+        assertEquals(Locale.GERMANY, BuildNumberTemplate.parseLocale("de_DE"));
+        assertEquals(new Locale("ja", "JP", "JP"), BuildNumberTemplate.parseLocale("ja_JP_JP"));
+        assertEquals(Locale.getDefault(), BuildNumberTemplate.parseLocale(null));
+    }
+
+    @Test
+    public void compiledOncePerSession() {
+        MavenSession session = SessionCacheTest.newSession();
+        List<String> items = Arrays.asList("buildNumber", "scmVersion");
+
+        BuildNumberTemplate template = BuildNumberTemplate.of(session, "{0}-{1}", "en", items, log);
+        assertSame(template, BuildNumberTemplate.of(session, "{0}-{1}", "en", items, log));
+        assertNotSame(template, BuildNumberTemplate.of(session, "{0}-{1}", "de", items, log));
+        assertNotSame(template, BuildNumberTemplate.of(session, "{1}-{0}", "en", items, log));
+    }
+
+    @Test
+    public void findsUsedArguments() {
+        assertEquals(bits(0, 2), BuildNumberTemplate.getArgumentIndices("{0}-{2}"));
+        assertEquals(bits(1), BuildNumberTemplate.getArgumentIndices("'{0}' {1,number,#'{'}"));
+        assertEquals(bits(3), BuildNumberTemplate.getArgumentIndices("it''s { 3 , date , yyyy }"));
+        assertEquals(bits(0, 1), BuildNumberTemplate.getArgumentIndices("{0,choice,0#none|1#{1}}"));
+        assertEquals(bits(), BuildNumberTemplate.getArgumentIndices("no '{arguments}'"));
+    }
+
+    @Test
+    public void marksUnusedItems() {
+        BuildNumberTemplate template = BuildNumberTemplate.compile(
+                "{0}-{2}", Locale.US, Arrays.asList("buildNumber", "scmVersion", "timestamp", "extra"));
+
+        List<BuildNumberTemplate.Item> items = template.getItems();
+        assertTrue(items.get(0).isUsed());
+        assertFalse(items.get(1).isUsed());
+        assertTrue(items.get(2).isUsed());
+        assertFalse(items.get(3).isUsed());
+        assertNull(BuildNumberTemplate.getArgumentIndices("{x}"));
+    }
+
+    private static BitSet bits(int... indices) {
+        BitSet bits = new BitSet();
+        for (int index : indices) {
+            bits.set(index);
+        }
+        return bits;
+    }
+}
@@ -0,0 +1,157 @@
+package org.codehaus.mojo.build;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Map;
+
+import com.google.gson.Gson;
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.scm.provider.git.gitexe.GitExeScmProvider;
+import org.apache.maven.scm.provider.git.jgit.JGitScmProvider;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BuildTimingsTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final Log log = new SystemStreamLog();
+
+    @Test
+    public void sharedWithinSession() {
+        MavenSession session = SessionCacheTest.newSession();
+
+        assertNull(BuildTimings.peek(session));
+        BuildTimings timings = BuildTimings.of(session, log);
+        assertSame(timings, BuildTimings.of(session, log));
+        assertSame(timings, BuildTimings.peek(session));
+    }
+
+    @Test
+    public void accumulatesSteps() throws Exception {
+        BuildTimings timings = BuildTimings.of(null, log);
+
+        assertEquals("value", timings.time("create", "info", () -> "value"));
+        timings.record("create", "info", 2_000_000);
+        try {
+            timings.time("create", "status", () -> {
+                throw new IOException("failed");
+            });
+            fail();
+        } catch (IOException e) {
+            assertEquals("failed", e.getMessage());
+        }
+
+        assertEquals(2, timings.getStep("create", "info").getCount());
+        assertTrue(timings.getStep("create", "info").getNanos() >= 2_000_000);
+        // failed steps take time, too
+        assertEquals(1, timings.getStep("create", "status").getCount());
+        assertNull(timings.getStep("create", "branch"));
+        assertNull(timings.getStep("create-metadata", "info"));
+    }
+
+    @Test
+    public void countsProcesses() {
+        BuildTimings timings = BuildTimings.of(null, log);
+
+        timings.processStarted();
+        timings.providerCommand(new GitExeScmProvider());
+        timings.providerCommand(new JGitScmProvider(null));
+
+        assertEquals(2, timings.getProcesses());
+    }
+
+    @Test
+    public void countsProcessesPerSession() {
+        MavenSession session = SessionCacheTest.newSession();
+        BuildTimings.of(session, log).processStarted();
+        BuildTimings.of(SessionCacheTest.newSession(), log).processStarted();
+        BuildTimings.of(session, log).processStarted();
+
+        assertEquals(2, BuildTimings.of(session, log).getProcesses());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void rendersJson() {
+        BuildTimings timings = BuildTimings.of(null, log);
+        timings.record("create", BuildTimings.EXECUTION, 5_000_000);
+        timings.record("create", "info", 1_250_000);
+
+        Map<String, Object> report = new Gson().fromJson(timings.toJson(), Map.class);
+
+        Map<String, Object> create = (Map<String, Object>) ((Map<String, Object>) report.get("goals")).get("create");
+        assertEquals(1.0, ((Map<String, Object>) create.get("execution")).get("count"));
+        assertEquals(5.0, ((Map<String, Object>) create.get("execution")).get("millis"));
+        assertEquals(1.3, ((Map<String, Object>) create.get("info")).get("millis"));
+        assertTrue(report.containsKey("processes"));
+    }
+
+    @Test
+    public void summarizesExecutions() {
+        BuildTimings timings = BuildTimings.of(null, log);
+        timings.record("create", BuildTimings.EXECUTION, 5_000_000);
+        timings.record("create", BuildTimings.EXECUTION, 7_000_000);
+        timings.record("create", "info", 3_000_000);
+        timings.record("create-metadata", BuildTimings.EXECUTION, 1_000_000);
+
+        assertThat(
+                timings.getSummary(),
+                is("buildnumber: 3 executions in 13 ms (create 12 ms, create-metadata 1 ms), 0 processes"));
+    }
+
+    @Test
+    public void writesReportToRootBuildDirectory() throws IOException {
+        File root = temporaryFolder.getRoot();
+        DefaultMavenExecutionRequest request = new DefaultMavenExecutionRequest();
+        request.setBaseDirectory(root);
+        @SuppressWarnings("deprecation")
+        MavenSession session = new MavenSession(
+                null, new DefaultRepositorySystemSession(), request, new DefaultMavenExecutionResult());
+
+        BuildTimings.report(session, log);
+        File report = new File(root, "target/" + BuildTimings.REPORT_NAME);
+        assertFalse("nothing to report", report.exists());
+
+        BuildTimings.of(session, log).record("create", BuildTimings.EXECUTION, 1_000_000);
+        BuildTimings.report(session, log);
+
+        assertThat(new String(Files.readAllBytes(report.toPath()), StandardCharsets.UTF_8), containsString("create"));
+    }
+
+    @Test
+    public void writesReportWhenSessionEnds() {
+        File root = temporaryFolder.getRoot();
+        DefaultMavenExecutionRequest request = new DefaultMavenExecutionRequest();
+        request.setBaseDirectory(root);
+        @SuppressWarnings("deprecation")
+        MavenSession session = new MavenSession(
+                null, new DefaultRepositorySystemSession(), request, new DefaultMavenExecutionResult());
+
+        BuildTimings.of(session, log).record("create", BuildTimings.EXECUTION, 1_000_000);
+        File report = new File(root, "target/" + BuildTimings.REPORT_NAME);
+        assertFalse(report.exists());
+
+        request.getExecutionListener().sessionEnded(null);
+
+        assertTrue(report.exists());
+    }
+}
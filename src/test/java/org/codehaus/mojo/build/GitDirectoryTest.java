@@ -0,0 +1,139 @@
+package org.codehaus.mojo.build;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class GitDirectoryTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File repository;
+
+    @Before
+    public void createRepository() throws Exception {
+        Assume.assumeTrue("git is not available", isGitAvailable());
+
+        repository = folder.newFolder("repository");
+        git(repository, "init", "-q");
+        git(repository, "checkout", "-q", "-b", "feature/x");
+        commit("first");
+        commit("second");
+    }
+
+    @Test
+    public void readsLooseRefsAndObjects() throws Exception {
+        GitDirectory gitDirectory = GitDirectory.find(new File(repository, "sub/dir"));
+
+        assertEquals("feature/x", gitDirectory.getBranch());
+        assertEquals(git(repository, "rev-parse", "HEAD"), gitDirectory.getHeadCommit());
+        assertEquals(Integer.valueOf(1), gitDirectory.getParentCount(gitDirectory.getHeadCommit()));
+    }
+
+    @Test
+    public void readsPackedRefsAndObjects() throws Exception {
+        git(repository, "gc", "-q");
+        git(repository, "pack-refs", "--all");
+
+        GitDirectory gitDirectory = GitDirectory.find(repository);
+
+        assertEquals("feature/x", gitDirectory.getBranch());
+        assertEquals(git(repository, "rev-parse", "HEAD"), gitDirectory.getHeadCommit());
+        assertEquals(Integer.valueOf(1), gitDirectory.getParentCount(gitDirectory.getHeadCommit()));
+        assertEquals(Integer.valueOf(0), gitDirectory.getParentCount(git(repository, "rev-parse", "HEAD~1")));
+    }
+
+    @Test
+    public void detachedHeadHasNoBranch() throws Exception {
+        git(repository, "checkout", "-q", "--detach");
+
+        GitDirectory gitDirectory = GitDirectory.find(repository);
+
+        assertNull(gitDirectory.getBranch());
+        assertEquals(git(repository, "rev-parse", "HEAD"), gitDirectory.getHeadCommit());
+    }
+
+    @Test
+    public void countsParentsOfMerge() throws Exception {
+        git(repository, "checkout", "-q", "-b", "other", "HEAD~1");
+        commit("third");
+        git(repository, "checkout", "-q", "feature/x");
+        git(repository, "merge", "-q", "--no-ff", "-m", "merge", "other");
+
+        GitDirectory gitDirectory = GitDirectory.find(repository);
+
+        assertEquals(Integer.valueOf(2), gitDirectory.getParentCount(gitDirectory.getHeadCommit()));
+    }
+
+    @Test
+    public void followsLinkedWorktree() throws Exception {
+        File worktree = new File(folder.getRoot(), "worktree");
+        git(repository, "worktree", "add", "-q", "-b", "in-worktree", worktree.getAbsolutePath());
+        git(repository, "pack-refs", "--all");
+
+        GitDirectory gitDirectory = GitDirectory.find(worktree);
+
+        assertEquals("in-worktree", gitDirectory.getBranch());
+        assertEquals(git(worktree, "rev-parse", "HEAD"), gitDirectory.getHeadCommit());
+    }
+
+    @Test
+    public void noRepository() throws Exception {
+        assertNull(GitDirectory.find(folder.newFolder("other")));
+    }
+
+    private void commit(String message) throws Exception {
+        File file = new File(repository, "sub/dir/" + message + ".txt");
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), message.getBytes(StandardCharsets.UTF_8));
+        git(repository, "add", "-A");
+        git(repository, "commit", "-q", "-m", message);
+    }
+
+    private static boolean isGitAvailable() {
+        try {
+            git(new File("."), "--version");
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static String git(File directory, String... args) throws IOException, InterruptedException {
+        List<String> command =
+                new ArrayList<>(Arrays.asList("git", "-c", "user.name=test", "-c", "user.email=test@example.org"));
+        command.addAll(Arrays.asList(args));
+        Process process = new ProcessBuilder(command)
+                .directory(directory)
+                .redirectErrorStream(true)
+                .start();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (InputStream in = process.getInputStream()) {
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                output.write(buffer, 0, read);
+            }
+        }
+        String text = new String(output.toByteArray(), StandardCharsets.UTF_8).trim();
+        if (process.waitFor() != 0) {
+            throw new IOException(command + " failed: " + text);
+        }
+        return text;
+    }
+}
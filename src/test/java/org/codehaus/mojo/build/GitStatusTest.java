@@ -0,0 +1,307 @@
+package org.codehaus.mojo.build;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Future;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.PluginExecution;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.apache.maven.scm.ScmFile;
+import org.apache.maven.scm.ScmFileStatus;
+import org.codehaus.plexus.util.xml.Xpp3DomBuilder;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GitStatusTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final Log log = new SystemStreamLog();
+
+    private File repository;
+
+    @Before
+    public void createRepository() throws Exception {
+        Assume.assumeTrue("git is not available", isGitAvailable());
+
+        repository = folder.newFolder("repository");
+        git(repository, "init", "-q");
+        git(repository, "checkout", "-q", "-b", "feature/x");
+        write("sub/modified.txt", "modified");
+        write("sub/deleted.txt", "deleted");
+        write("sub/renamed.txt", "renamed");
+        write("other/file.txt", "other");
+        git(repository, "add", "-A");
+        git(repository, "commit", "-q", "-m", "first");
+    }
+
+    @Test
+    public void cleanWorkingCopy() throws Exception {
+        GitStatus status = GitStatus.query(repository);
+
+        assertEquals(git(repository, "rev-parse", "HEAD"), status.getRevision());
+        assertEquals("feature/x", status.getBranch());
+        assertTrue(status.getChangedFiles().isEmpty());
+    }
+
+    @Test
+    public void reportsChangedFiles() throws Exception {
+        write("sub/modified.txt", "second");
+        write("sub/added file.txt", "second");
+        git(repository, "add", "sub/added file.txt");
+        git(repository, "rm", "-q", "sub/deleted.txt");
+        git(repository, "mv", "sub/renamed.txt", "sub/moved.txt");
+        write("sub/untracked.txt", "second");
+
+        List<ScmFile> changedFiles = GitStatus.query(repository).getChangedFiles();
+
+        assertEquals(
+                Arrays.asList(
+                        "sub/added file.txt[added]",
+                        "sub/deleted.txt[deleted]",
+                        "sub/modified.txt[modified]",
+                        "sub/moved.txt[renamed]"),
+                toStrings(changedFiles));
+        assertEquals(ScmFileStatus.RENAMED, changedFiles.get(3).getStatus());
+    }
+
+    @Test
+    public void stopsAfterMaxChangedFiles() throws Exception {
+        write("sub/modified.txt", "second");
+        write("sub/deleted.txt", "second");
+        write("sub/renamed.txt", "second");
+
+        GitStatus status = GitStatus.query(repository, 2);
+
+        assertEquals("feature/x", status.getBranch());
+        assertEquals(2, status.getChangedFiles().size());
+        assertTrue(status.hasMoreChanges());
+
+        GitStatus firstOnly = GitStatus.query(repository, 0);
+
+        assertTrue(firstOnly.getChangedFiles().isEmpty());
+        assertTrue(firstOnly.hasChanges());
+        assertFalse(GitStatus.query(repository, 3).hasMoreChanges());
+    }
+
+    @Test
+    public void doesNotWriteTheIndex() throws Exception {
+        File file = new File(repository, "sub/modified.txt");
+        assertTrue(file.setLastModified(file.lastModified() - 60000));
+        byte[] index = Files.readAllBytes(new File(repository, ".git/index").toPath());
+
+        assertFalse(GitStatus.query(repository).hasChanges());
+
+        assertTrue(Arrays.equals(index, Files.readAllBytes(new File(repository, ".git/index").toPath())));
+    }
+
+    @Test
+    public void limitedToDirectory() throws Exception {
+        write("other/file.txt", "second");
+
+        assertTrue(
+                GitStatus.query(new File(repository, "sub")).getChangedFiles().isEmpty());
+        assertEquals(1, GitStatus.query(repository).getChangedFiles().size());
+    }
+
+    @Test
+    public void detachedHeadHasNoBranch() throws Exception {
+        git(repository, "checkout", "-q", "--detach");
+
+        GitStatus status = GitStatus.query(repository);
+
+        assertNull(status.getBranch());
+        assertEquals(git(repository, "rev-parse", "HEAD"), status.getRevision());
+    }
+
+    @Test
+    public void parsesRecords() throws Exception {
+        write("sub/modified.txt", "second");
+        write("sub/deleted.txt", "second");
+        write("sub/renamed.txt", "second");
+        List<String> records = GitStatus.queryRecords(repository, 2);
+
+        GitStatus status = GitStatus.parse(records, "", 2);
+
+        assertEquals(toStrings(GitStatus.query(repository, 2).getChangedFiles()), toStrings(status.getChangedFiles()));
+        assertTrue(status.hasMoreChanges());
+        assertFalse(status.isIncomplete());
+        assertEquals("feature/x", status.getBranch());
+        assertEquals(git(repository, "rev-parse", "HEAD"), status.getRevision());
+        assertTrue(GitStatus.parse(records, "", 3).isIncomplete());
+        assertFalse(
+                GitStatus.parse(GitStatus.queryRecords(repository, 3), "", 3).isIncomplete());
+    }
+
+    @Test
+    public void parsesRecordsOfDirectory() throws Exception {
+        write("sub/modified.txt", "second");
+        write("other/file.txt", "second");
+        List<String> records = GitStatus.queryRecords(repository, 2);
+
+        assertEquals(
+                toStrings(GitStatus.query(new File(repository, "sub")).getChangedFiles()),
+                toStrings(GitStatus.parse(records, "sub/", 2).getChangedFiles()));
+        assertTrue(GitStatus.parse(records, "none/", 2).getChangedFiles().isEmpty());
+    }
+
+    @Test
+    public void prefetchedForWorkingCopy() throws Exception {
+        write("sub/modified.txt", "second");
+        MavenProject project = newProject("<doCheck>true</doCheck>");
+        MavenSession session = SessionCacheTest.newSession();
+
+        Future<List<String>> prefetch = ScmPrefetch.start(session, project, log);
+        GitStatus status = ScmPrefetch.getGitStatus(session, repository, 0);
+
+        assertTrue(prefetch.isDone());
+        assertTrue(status.hasMoreChanges());
+        assertEquals("feature/x", status.getBranch());
+        assertEquals(
+                1,
+                ScmPrefetch.getGitStatus(session, repository, 1)
+                        .getChangedFiles()
+                        .size());
+        assertEquals(
+                1,
+                ScmPrefetch.getGitStatus(session, new File(repository, "sub"), 1)
+                        .getChangedFiles()
+                        .size());
+        assertFalse(ScmPrefetch.getGitStatus(session, new File(repository, "other"), 1)
+                .hasChanges());
+        assertNull(ScmPrefetch.getGitStatus(SessionCacheTest.newSession(), repository, 1));
+    }
+
+    @Test
+    public void prefetchStopsAfterReportedModifications() throws Exception {
+        write("sub/modified.txt", "second");
+        write("other/file.txt", "second");
+        MavenProject project =
+                newProject("<doCheck>${check}</doCheck><maxReportedModifications>1</maxReportedModifications>");
+        MavenSession session = SessionCacheTest.newSession();
+        session.getUserProperties().setProperty("check", "true");
+
+        ScmPrefetch.start(session, project, log).get();
+
+        assertTrue(ScmPrefetch.getGitStatus(session, repository, 0).hasMoreChanges());
+        assertTrue(ScmPrefetch.getGitStatus(session, new File(repository, "other"), 0)
+                .hasMoreChanges());
+        // the status stopped before it got to the changes of sub
+        assertNull(ScmPrefetch.getGitStatus(session, new File(repository, "sub"), 1));
+    }
+
+    @Test
+    public void noPrefetchWithoutCheck() throws Exception {
+        MavenSession session = SessionCacheTest.newSession();
+
+        assertNull(ScmPrefetch.start(session, newProject(null), log));
+        assertNull(ScmPrefetch.start(session, newProject("<doUpdate>true</doUpdate>"), log));
+        assertNull(ScmPrefetch.start(session, newProject("<doCheck>true</doCheck><doUpdate>true</doUpdate>"), log));
+    }
+
+    @Test
+    public void noPrefetchWhenDisabledOrOutsideWorkingCopy() throws Exception {
+        MavenProject project = newProject("<doCheck>true</doCheck>");
+        MavenSession session = SessionCacheTest.newSession();
+        session.getUserProperties().setProperty(ScmPrefetch.PROPERTY, "false");
+
+        assertNull(ScmPrefetch.start(session, project, log));
+
+        MavenProject outside = newProject("<doCheck>true</doCheck>");
+        outside.setFile(new File(folder.newFolder("outside"), "pom.xml"));
+
+        assertNull(ScmPrefetch.start(SessionCacheTest.newSession(), outside, log));
+    }
+
+    private List<String> toStrings(List<ScmFile> files) {
+        List<String> strings = new ArrayList<>();
+        for (ScmFile file : files) {
+            strings.add(file.getPath() + "[" + file.getStatus() + "]");
+        }
+        return strings;
+    }
+
+    /**
+     * @param configuration the configuration of the create goal or <code>null</code> if the project does not declare
+     *     the plugin
+     */
+    private MavenProject newProject(String configuration) throws Exception {
+        Model model = new Model();
+        if (configuration != null) {
+            PluginExecution execution = new PluginExecution();
+            execution.addGoal("create");
+            execution.setConfiguration(
+                    Xpp3DomBuilder.build(new StringReader("<configuration>" + configuration + "</configuration>")));
+            Plugin plugin = new Plugin();
+            plugin.setGroupId("org.codehaus.mojo");
+            plugin.setArtifactId("buildnumber-maven-plugin");
+            plugin.addExecution(execution);
+            Build build = new Build();
+            build.addPlugin(plugin);
+            model.setBuild(build);
+        }
+        MavenProject project = new MavenProject(model);
+        project.setFile(new File(repository, "pom.xml"));
+        return project;
+    }
+
+    private void write(String path, String content) throws IOException {
+        File file = new File(repository, path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static boolean isGitAvailable() {
+        try {
+            git(new File("."), "--version");
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static String git(File directory, String... args) throws IOException, InterruptedException {
+        List<String> command =
+                new ArrayList<>(Arrays.asList("git", "-c", "user.name=test", "-c", "user.email=test@example.org"));
+        command.addAll(Arrays.asList(args));
+        Process process = new ProcessBuilder(command)
+                .directory(directory)
+                .redirectErrorStream(true)
+                .start();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (InputStream in = process.getInputStream()) {
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                output.write(buffer, 0, read);
+            }
+        }
+        String text = new String(output.toByteArray(), StandardCharsets.UTF_8).trim();
+        if (process.waitFor() != 0) {
+            throw new IOException(command + " failed: " + text);
+        }
+        return text;
+    }
+}
@@ -0,0 +1,151 @@
+package org.codehaus.mojo.build;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.apache.maven.scm.ScmException;
+import org.apache.maven.scm.ScmResult;
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the client against a stand-in for <code>hg serve --cmdserver pipe</code> written in Python, speaking the same
+ * protocol.
+ */
+public class HgCommandServerTest {
+    private static final String SERVER = String.join(
+            "\n",
+            "import os, struct, sys",
+            "out = sys.stdout.buffer",
+            "inp = sys.stdin.buffer",
+            "def send(channel, data):",
+            "    out.write(channel + struct.pack('>I', len(data)) + data)",
+            "    out.flush()",
+            "send(b'o', b'capabilities: getencoding runcommand\\nencoding: UTF-8')",
+            "while True:",
+            "    command = inp.readline()",
+            "    if not command:",
+            "        break",
+            "    length = struct.unpack('>I', inp.read(4))[0]",
+            "    args = inp.read(length).decode('utf-8').split('\\0')",
+            "    assert args[0] == '--cwd'",
+            "    if args[2:] == ['id', '-i']:",
+            "        send(b'o', b'1a2b3c4d5e6f+\\n')",
+            "        send(b'r', struct.pack('>i', 0))",
+            "    elif args[2:] == ['pid']:",
+            "        send(b'o', str(os.getpid()).encode() + b'\\n')",
+            "        send(b'r', struct.pack('>i', 0))",
+            "    elif args[2:] == ['cwd']:",
+            "        send(b'd', b'debug output')",
+            "        send(b'o', args[1].encode('utf-8') + b'\\n')",
+            "        send(b'r', struct.pack('>i', 0))",
+            "    elif args[2:] == ['prompt']:",
+            "        out.write(b'L' + struct.pack('>I', 4096))",
+            "        out.flush()",
+            "        assert struct.unpack('>I', inp.read(4))[0] == 0",
+            "        send(b'r', struct.pack('>i', 0))",
+            "    else:",
+            "        send(b'e', b'abort: unknown command\\n')",
+            "        send(b'r', struct.pack('>i', 255))",
+            "");
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File script;
+
+    private HgCommandServer server;
+
+    @Before
+    public void startServer() throws Exception {
+        Assume.assumeTrue("python3 is not available", isPythonAvailable());
+        script = folder.newFile("cmdserver.py");
+        Files.write(script.toPath(), SERVER.getBytes(StandardCharsets.UTF_8));
+        server = HgCommandServer.start(folder.getRoot(), "python3", script.getAbsolutePath());
+    }
+
+    @After
+    public void stopServer() {
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void runsCommands() throws Exception {
+        HgOutputConsumer consumer = new HgOutputConsumer();
+
+        ScmResult result = server.execute(folder.getRoot(), consumer, "id", "-i");
+
+        assertTrue(result.isSuccess());
+        assertEquals("1a2b3c4d5e6f+", consumer.getOutput());
+    }
+
+    @Test
+    public void runsAllCommandsInOneProcess() throws Exception {
+        HgOutputConsumer first = new HgOutputConsumer();
+        HgOutputConsumer second = new HgOutputConsumer();
+
+        server.execute(folder.getRoot(), first, "pid");
+        server.execute(folder.getRoot(), second, "pid");
+
+        assertEquals(first.getOutput(), second.getOutput());
+    }
+
+    @Test
+    public void passesWorkingDirectory() throws Exception {
+        File directory = folder.newFolder("module");
+        HgOutputConsumer consumer = new HgOutputConsumer();
+
+        server.execute(directory, consumer, "cwd");
+
+        assertEquals(directory.getAbsolutePath(), consumer.getOutput());
+    }
+
+    @Test
+    public void reportsFailedCommands() throws Exception {
+        ScmResult result = server.execute(folder.getRoot(), new HgOutputConsumer(), "unknown");
+
+        assertFalse(result.isSuccess());
+        assertEquals("abort: unknown command\n", result.getCommandOutput());
+
+        // the server is still usable
+        assertTrue(server.execute(folder.getRoot(), new HgOutputConsumer(), "id", "-i")
+                .isSuccess());
+    }
+
+    @Test
+    public void answersInputRequests() throws Exception {
+        assertTrue(server.execute(folder.getRoot(), new HgOutputConsumer(), "prompt")
+                .isSuccess());
+    }
+
+    @Test(expected = ScmException.class)
+    public void failsIfServerIsGone() throws Exception {
+        server.close();
+
+        server.execute(folder.getRoot(), new HgOutputConsumer(), "id", "-i");
+    }
+
+    @Test(expected = ScmException.class)
+    public void failsWithoutHello() throws Exception {
+        HgCommandServer.start(folder.getRoot(), "python3", "-c", "pass");
+    }
+
+    private static boolean isPythonAvailable() {
+        try {
+            return new ProcessBuilder("python3", "--version").start().waitFor() == 0;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package org.codehaus.mojo.build;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.scm.ScmException;
+import org.apache.maven.scm.provider.hg.command.HgConsumer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+
+public class HgCommandServersTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final List<String> messages = new ArrayList<>();
+
+    private final Log log = new SystemStreamLog() {
+        @Override
+        public boolean isDebugEnabled() {
+            return true;
+        }
+
+        @Override
+        public void debug(CharSequence content) {
+            messages.add(content.toString());
+        }
+    };
+
+    @Test
+    public void startsHgWithoutRetryingFailedServer() {
+        MavenSession session = SessionCacheTest.newSession();
+        // neither the server nor hg can run in a directory that does not exist
+        File directory = new File(temporaryFolder.getRoot(), "missing");
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                HgCommandServers.execute(session, log, directory, new HgConsumer(), "id", "-i");
+            } catch (ScmException e) {
+                // hg did not run
+            }
+        }
+
+        assertEquals(
+                1,
+                messages.stream()
+                        .filter(message -> message.startsWith("Cannot start the Mercurial command server"))
+                        .count());
+        assertEquals(2, BuildTimings.of(session, log).getProcesses());
+    }
+}
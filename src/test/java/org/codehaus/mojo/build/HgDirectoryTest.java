@@ -0,0 +1,96 @@
+package org.codehaus.mojo.build;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class HgDirectoryTest {
+    private static final String P1 = "0123456789abcdef0123456789abcdef01234567";
+
+    private static final String P2 = "fedcba9876543210fedcba9876543210fedcba98";
+
+    private static final String NULL_ID = "0000000000000000000000000000000000000000";
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private File repository;
+
+    private File hgDir;
+
+    @Before
+    public void createRepository() throws Exception {
+        repository = folder.newFolder("repository");
+        hgDir = new File(repository, ".hg");
+        hgDir.mkdirs();
+        new File(repository, "sub/dir").mkdirs();
+    }
+
+    @Test
+    public void readsParentFromDirstate() throws Exception {
+        writeDirstate(new byte[0], P1, NULL_ID, 0);
+
+        assertEquals(
+                "0123456789ab",
+                HgDirectory.find(new File(repository, "sub/dir")).getParent());
+    }
+
+    @Test
+    public void readsParentFromDirstateV2() throws Exception {
+        writeDirstate("dirstate-v2\n".getBytes(StandardCharsets.US_ASCII), P1, NULL_ID, 12);
+
+        assertEquals("0123456789ab", HgDirectory.find(repository).getParent());
+    }
+
+    @Test
+    public void uncommittedMergeHasNoParent() throws Exception {
+        writeDirstate(new byte[0], P1, P2, 0);
+
+        assertNull(HgDirectory.find(repository).getParent());
+    }
+
+    @Test
+    public void emptyRepository() throws Exception {
+        assertNull(HgDirectory.find(repository).getParent());
+        assertEquals("default", HgDirectory.find(repository).getBranch());
+    }
+
+    @Test
+    public void readsBranch() throws Exception {
+        Files.write(new File(hgDir, "branch").toPath(), "stable\n".getBytes(StandardCharsets.UTF_8));
+
+        assertEquals("stable", HgDirectory.find(repository).getBranch());
+    }
+
+    @Test
+    public void noRepository() throws Exception {
+        assertNull(HgDirectory.find(folder.newFolder("other")));
+    }
+
+    private void writeDirstate(byte[] header, String p1, String p2, int padding) throws Exception {
+        ByteArrayOutputStream dirstate = new ByteArrayOutputStream();
+        dirstate.write(header);
+        dirstate.write(toBytes(p1));
+        dirstate.write(new byte[padding]);
+        dirstate.write(toBytes(p2));
+        dirstate.write(new byte[padding]);
+        Files.write(new File(hgDir, "dirstate").toPath(), dirstate.toByteArray());
+    }
+
+    private static byte[] toBytes(String id) {
+        byte[] bytes = new byte[id.length() / 2];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) Integer.parseInt(id.substring(2 * i, 2 * i + 2), 16);
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,98 @@
+package org.codehaus.mojo.build;
+
+import java.io.File;
+import java.lang.reflect.Method;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.scm.ScmResult;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * The tests are compiled for Java 8 like the plugin, so they use <code>jdk.jfr</code> through reflection, too.
+ */
+public class JfrEventsTest {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Class<?> recordingClass;
+
+    @Before
+    public void before() {
+        try {
+            recordingClass = Class.forName("jdk.jfr.Recording");
+        } catch (ClassNotFoundException e) {
+            assumeTrue("no flight recorder", false);
+        }
+    }
+
+    @Test
+    public void nothingWithoutRecording() {
+        assumeTrue(!JfrEvents.isRecording());
+
+        assertNull(JfrEvents.begin(JfrEvents.Type.SCM_COMMAND));
+        // committing nothing does nothing
+        JfrEvents.commit(null, "git", "status", "dir", 0, 0L);
+    }
+
+    @Test
+    public void recordsEvents() throws Exception {
+        File directory = temporaryFolder.getRoot();
+        Object recording = recordingClass.getConstructor().newInstance();
+        for (JfrEvents.Type type : JfrEvents.Type.values()) {
+            recordingClass.getMethod("enable", String.class).invoke(recording, type.getName());
+        }
+        recordingClass.getMethod("start").invoke(recording);
+        try {
+            assertTrue(JfrEvents.isRecording());
+
+            ScmResult result = JfrEvents.scmCommand(
+                    "git", "info", directory, () -> new ScmResult("git info", null, "12345", true));
+            assertEquals("12345", result.getCommandOutput());
+
+            ScmProcess.run(directory, '\n', record -> true, "java", "-version");
+
+            Object event = JfrEvents.begin(JfrEvents.Type.OUTPUT_WRITE);
+            JfrEvents.commit(event, "PropertiesOutputFormat", 4, 120L);
+        } finally {
+            recordingClass.getMethod("stop").invoke(recording);
+        }
+        assertTrue(!JfrEvents.isRecording());
+
+        Path dump = temporaryFolder.newFile("recording.jfr").toPath();
+        recordingClass.getMethod("dump", Path.class).invoke(recording, dump);
+        recordingClass.getMethod("close").invoke(recording);
+
+        List<String> events = new ArrayList<>();
+        Method readAllEvents = Class.forName("jdk.jfr.consumer.RecordingFile").getMethod("readAllEvents", Path.class);
+        for (Object recorded : (List<?>) readAllEvents.invoke(null, dump)) {
+            Object type = recorded.getClass().getMethod("getEventType").invoke(recorded);
+            String name = (String) type.getClass().getMethod("getName").invoke(type);
+            Method getValue = recorded.getClass().getMethod("getValue", String.class);
+            if (name.equals(JfrEvents.Type.SCM_COMMAND.getName())) {
+                events.add(name + " " + getValue.invoke(recorded, "provider") + " "
+                        + getValue.invoke(recorded, "command") + " " + getValue.invoke(recorded, "exitStatus") + " "
+                        + getValue.invoke(recorded, "outputBytes"));
+            } else if (name.equals(JfrEvents.Type.OUTPUT_WRITE.getName())) {
+                events.add(name + " " + getValue.invoke(recorded, "format") + " "
+                        + getValue.invoke(recorded, "properties") + " " + getValue.invoke(recorded, "bytes"));
+            }
+        }
+
+        assertTrue(events.toString(), events.contains("org.codehaus.mojo.buildnumber.ScmCommand git info 0 5"));
+        // java -version writes to the error output only
+        assertTrue(events.toString(), events.contains("org.codehaus.mojo.buildnumber.ScmCommand java -version 0 0"));
+        assertTrue(
+                events.toString(),
+                events.contains("org.codehaus.mojo.buildnumber.OutputWrite PropertiesOutputFormat 4 120"));
+    }
+}
@@ -10,6 +10,7 @@ import org.junit.Before;
 import org.junit.Test;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.*;
 
 /**
@@ -49,6 +50,13 @@ public class JsonOutputFormatTest {
         assertThat(map.get("key1"), is((Object) "value1"));
     }
 
+    @Test
+    public void writesSortedKeys() throws IOException {
+        properties.put("a", "value2");
+
+        assertThat(writePropertiesToString(), is("{\"a\":\"value2\",\"key0\":\"value0\",\"key1\":\"value1\"}"));
+    }
+
     private String writePropertiesToString() throws IOException {
         ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
         outputFormat.write(properties, bytesOut);
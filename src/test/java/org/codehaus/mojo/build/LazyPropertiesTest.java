@@ -0,0 +1,243 @@
+package org.codehaus.mojo.build;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.execution.ExecutionEvent;
+import org.apache.maven.execution.ExecutionListener;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.Resource;
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.MojoExecutionException;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class LazyPropertiesTest {
+    private static final Log LOG = new SystemStreamLog();
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private final AtomicInteger revisionQueries = new AtomicInteger();
+
+    private final AtomicInteger branchQueries = new AtomicInteger();
+
+    private final MavenSession session = SessionCacheTest.newSession();
+
+    private final MavenProject project = newProject();
+
+    @Test
+    public void copiesOnlyPropertiesReadByStartingGoal() throws Exception {
+        Properties projectProperties = project.getProperties();
+        LazyProperties properties = newProperties();
+        MojoExecution jar = newExecution("maven-jar-plugin", "jar", "<Implementation-Build>${buildNumber}");
+
+        listener().mojoStarted(SessionListenerTest.newEvent(ExecutionEvent.Type.MojoStarted, newProject(), jar));
+        assertNull(projectProperties.getProperty("buildNumber"));
+        assertEquals(0, revisionQueries.get());
+
+        listener()
+                .mojoStarted(SessionListenerTest.newEvent(
+                        ExecutionEvent.Type.MojoStarted,
+                        project,
+                        newExecution("maven-compiler-plugin", "compile", "")));
+        listener().mojoStarted(SessionListenerTest.newEvent(ExecutionEvent.Type.MojoStarted, project, jar));
+
+        assertSame(projectProperties, project.getProperties());
+        assertEquals("abc", projectProperties.getProperty("buildNumber"));
+        assertEquals("1.0", projectProperties.getProperty("version"));
+        assertNull(projectProperties.getProperty("scmBranch"));
+        assertFalse(properties.isDeferred("buildNumber"));
+        assertTrue(properties.isDeferred("scmBranch"));
+        assertTrue(properties.isSet("scmBranch"));
+        assertEquals(1, revisionQueries.get());
+        assertEquals(0, branchQueries.get());
+    }
+
+    @Test
+    public void copiesPropertiesOfFilteredResources() throws Exception {
+        File directory = temporaryFolder.newFolder("resources");
+        Files.write(
+                new File(directory, "build.properties").toPath(),
+                "branch=@scmBranch@".getBytes(StandardCharsets.UTF_8));
+        Resource resource = new Resource();
+        resource.setDirectory(directory.getPath());
+        resource.setFiltering(true);
+        project.addResource(resource);
+        newProperties();
+
+        listener()
+                .mojoStarted(SessionListenerTest.newEvent(
+                        ExecutionEvent.Type.MojoStarted,
+                        project,
+                        newExecution("maven-resources-plugin", "testResources", "")));
+        assertEquals(0, branchQueries.get());
+
+        listener()
+                .mojoStarted(SessionListenerTest.newEvent(
+                        ExecutionEvent.Type.MojoStarted,
+                        project,
+                        newExecution("maven-resources-plugin", "resources", "")));
+
+        assertEquals("main", project.getProperties().getProperty("scmBranch"));
+        assertNull(project.getProperties().getProperty("buildNumber"));
+        assertEquals(0, revisionQueries.get());
+    }
+
+    @Test
+    public void copiesPropertiesReadInForkedLifecycle() throws Exception {
+        newProperties();
+        MojoExecution forking = newExecution("maven-source-plugin", "jar", "");
+        forking.setForkedExecutions(
+                project.getId(), asList(newExecution("maven-antrun-plugin", "run", "<echo>${scmBranch}")));
+
+        listener().forkStarted(SessionListenerTest.newEvent(ExecutionEvent.Type.ForkStarted, project, forking));
+
+        assertEquals("main", project.getProperties().getProperty("scmBranch"));
+        assertEquals(0, revisionQueries.get());
+    }
+
+    @Test
+    public void sameLazyPropertiesForProject() {
+        assertSame(LazyProperties.of(session, project, LOG), LazyProperties.of(session, project, LOG));
+    }
+
+    @Test
+    public void copiedRightAwayWithoutSession() throws Exception {
+        LazyProperties properties = LazyProperties.of(null, project, LOG);
+
+        properties.putDeferred("buildNumber", new LazyProperties.Deferred(() -> "abc"));
+
+        assertEquals("abc", project.getProperties().getProperty("buildNumber"));
+    }
+
+    @Test
+    public void reportsFailureInSessionResult() throws Exception {
+        LazyProperties properties = LazyProperties.of(session, project, LOG);
+        properties.putDeferred("buildNumber", new LazyProperties.Deferred(() -> {
+            throw new Exception("no scm");
+        }));
+
+        listener()
+                .mojoStarted(SessionListenerTest.newEvent(
+                        ExecutionEvent.Type.MojoStarted,
+                        project,
+                        newExecution("maven-jar-plugin", "jar", "${buildNumber}")));
+
+        assertNull(project.getProperties().getProperty("buildNumber"));
+        assertEquals(1, session.getResult().getExceptions().size());
+        assertEquals("no scm", session.getResult().getExceptions().get(0).getMessage());
+    }
+
+    @Test
+    public void reportsFailureOnEveryRead() {
+        AtomicInteger calls = new AtomicInteger();
+        LazyProperties.Deferred deferred = new LazyProperties.Deferred(() -> {
+            calls.incrementAndGet();
+            throw new Exception("no scm");
+        });
+
+        for (int i = 0; i < 2; i++) {
+            try {
+                deferred.get();
+                fail("expected a MojoExecutionException");
+            } catch (MojoExecutionException e) {
+                assertEquals("no scm", e.getMessage());
+            }
+        }
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void computesOnceForConcurrentReaders() throws Exception {
+        final int threads = 16;
+        final AtomicInteger computations = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        final LazyProperties.Deferred deferred = new LazyProperties.Deferred(() -> {
+            computations.incrementAndGet();
+            Thread.sleep(50);
+            return "abc";
+        });
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return deferred.get();
+                }));
+            }
+            start.countDown();
+            for (Future<String> result : results) {
+                assertEquals("abc", result.get(1, TimeUnit.MINUTES));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, computations.get());
+        assertTrue(deferred.isComputed());
+    }
+
+    private ExecutionListener listener() {
+        return session.getRequest().getExecutionListener();
+    }
+
+    private static MavenProject newProject() {
+        Model model = new Model();
+        model.setArtifactId("project" + System.identityHashCode(model));
+        model.addProperty("version", "1.0");
+        return new MavenProject(model);
+    }
+
+    private static MojoExecution newExecution(String artifactId, String goal, String value) {
+        Plugin plugin = new Plugin();
+        plugin.setArtifactId(artifactId);
+        MojoExecution execution = new MojoExecution(plugin, goal, "default");
+        Xpp3Dom configuration = new Xpp3Dom("configuration");
+        Xpp3Dom parameter = new Xpp3Dom("parameter");
+        parameter.setValue(value);
+        configuration.addChild(parameter);
+        execution.setConfiguration(configuration);
+        return execution;
+    }
+
+    private LazyProperties newProperties() throws MojoExecutionException {
+        LazyProperties properties = LazyProperties.of(session, project, LOG);
+        properties.putDeferred("buildNumber", new LazyProperties.Deferred(() -> {
+            revisionQueries.incrementAndGet();
+            return "abc";
+        }));
+        properties.putDeferred("scmBranch", new LazyProperties.Deferred(() -> {
+            branchQueries.incrementAndGet();
+            return "main";
+        }));
+        return properties;
+    }
+}
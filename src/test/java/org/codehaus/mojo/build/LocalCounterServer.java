@@ -0,0 +1,131 @@
+package org.codehaus.mojo.build;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A stand-in for the counter service used by {@link BuildNumberService}: it leases blocks of numbers with
+ * <code>POST /counters/&lt;counter&gt;?count=&lt;size&gt;</code> and answers with the first number of the block.
+ * Counters live in memory only.
+ */
+public final class LocalCounterServer implements AutoCloseable {
+    private final HttpServer server;
+
+    private final Map<String, Integer> counters = new HashMap<>();
+
+    private final AtomicInteger leases = new AtomicInteger();
+
+    private volatile long latencyMillis;
+
+    private volatile int failureStatus;
+
+    private LocalCounterServer(HttpServer server) {
+        this.server = server;
+    }
+
+    /**
+     * Start a server on a free port of the loopback interface.
+     *
+     * @return the running server
+     * @throws IOException if the server cannot be started
+     */
+    public static LocalCounterServer start() throws IOException {
+        // without it the small answers wait for the delayed ACK of the client, about 40 ms each
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        LocalCounterServer counterServer = new LocalCounterServer(server);
+        server.createContext("/counters/", counterServer::handle);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        return counterServer;
+    }
+
+    /**
+     * @return the url to use as <code>buildNumberServiceUrl</code>
+     */
+    public String getUrl() {
+        return "http://" + server.getAddress().getHostString() + ':'
+                + server.getAddress().getPort() + "/counters";
+    }
+
+    /**
+     * @return how many blocks were leased
+     */
+    public int getLeases() {
+        return leases.get();
+    }
+
+    /**
+     * @param latencyMillis the time to wait before answering a lease, to simulate a remote service
+     */
+    public void setLatencyMillis(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    /**
+     * @param failureStatus the status to answer every lease with, or 0 to lease numbers
+     */
+    public void setFailureStatus(int failureStatus) {
+        this.failureStatus = failureStatus;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (latencyMillis > 0) {
+                TimeUnit.MILLISECONDS.sleep(latencyMillis);
+            }
+            if (failureStatus != 0) {
+                exchange.sendResponseHeaders(failureStatus, -1);
+                return;
+            }
+            if (!"POST".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            String path = exchange.getRequestURI().getRawPath();
+            String counter = URLDecoder.decode(path.substring("/counters/".length()), "UTF-8");
+            String query = exchange.getRequestURI().getQuery();
+            int count = query != null && query.startsWith("count=") ? Integer.parseInt(query.substring(6)) : 1;
+
+            int first;
+            synchronized (counters) {
+                first = counters.getOrDefault(counter, 0) + 1;
+                counters.put(counter, first + count - 1);
+            }
+            leases.incrementAndGet();
+
+            byte[] body = (first + "\n").getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            exchange.sendResponseHeaders(503, -1);
+        } finally {
+            exchange.close();
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        ((ExecutorService) server.getExecutor()).shutdownNow();
+    }
+}
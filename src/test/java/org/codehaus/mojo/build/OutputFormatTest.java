@@ -1,5 +1,9 @@
 package org.codehaus.mojo.build;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Properties;
+
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -29,4 +33,16 @@ public class OutputFormatTest {
 
         assertTrue(outputFormat instanceof PropertiesOutputFormat);
     }
+
+    @Test
+    public void rendersWhatIsWritten() throws IOException {
+        Properties properties = new Properties();
+        properties.put("key0", "value0");
+        OutputFormat outputFormat = OutputFormat.getOutputFormatFor("file.json");
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        outputFormat.write(properties, out);
+
+        assertArrayEquals(out.toByteArray(), outputFormat.render(properties));
+    }
 }
@@ -3,14 +3,16 @@ package org.codehaus.mojo.build;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.util.Properties;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertFalse;
-import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -48,6 +50,35 @@ public class PropertiesOutputFormatTest {
         assertThat(deserializedProperties, is(properties));
     }
 
+    @Test
+    public void writesSortedWithoutDate() throws IOException {
+        properties.put("a.b", "value2");
+        properties.put("key=2", "line1\nline2");
+
+        String written = new String(writeProperties(), StandardCharsets.ISO_8859_1);
+
+        String nl = System.getProperty("line.separator");
+        assertThat(
+                written,
+                is("#Created by build system. Do not modify" + nl
+                        + "a.b=value2" + nl
+                        + "key0=value0" + nl
+                        + "key1=value1" + nl
+                        + "key\\=2=line1\\nline2" + nl));
+    }
+
+    @Test
+    public void writesSameBytesForSameProperties() throws IOException {
+        byte[] first = writeProperties();
+
+        Properties reordered = new Properties();
+        reordered.put("key1", "value1");
+        reordered.put("key0", "value0");
+        properties = reordered;
+
+        assertArrayEquals(first, writeProperties());
+    }
+
     private byte[] writeProperties() throws IOException {
         ByteArrayOutputStream bytesOut = new ByteArrayOutputStream();
         outputFormat.write(properties, bytesOut);
@@ -0,0 +1,92 @@
+package org.codehaus.mojo.build;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.maven.model.Build;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.model.Resource;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.codehaus.plexus.util.xml.Xpp3Dom;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+
+public class PropertyReferencesTest {
+    private static final List<String> NAMES = Arrays.asList("scmBranch", "buildIsTainted");
+
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    private final Log log = new SystemStreamLog();
+
+    @Test
+    public void findsReferencesInPluginConfiguration() {
+        Xpp3Dom configuration = new Xpp3Dom("configuration");
+        Xpp3Dom manifestEntry = new Xpp3Dom("Implementation-Branch");
+        manifestEntry.setValue("${scmBranch}");
+        configuration.addChild(manifestEntry);
+        Plugin plugin = new Plugin();
+        plugin.setArtifactId("maven-jar-plugin");
+        plugin.setConfiguration(configuration);
+        MavenProject project = newProject("a");
+        project.getBuild().addPlugin(plugin);
+
+        Set<String> referenced =
+                PropertyReferences.find(null, Arrays.asList(newProject("b"), project), NAMES, false, log);
+
+        assertEquals(Collections.singleton("scmBranch"), referenced);
+    }
+
+    @Test
+    public void findsNoReferences() {
+        MavenProject project = newProject("a");
+        project.getProperties().setProperty("scmBranch", "main");
+
+        assertEquals(
+                Collections.emptySet(),
+                PropertyReferences.find(null, Collections.singletonList(project), NAMES, true, log));
+    }
+
+    @Test
+    public void findsReferencesInFilteredResources() throws Exception {
+        File filtered = folder.newFolder("filtered");
+        Files.write(new File(filtered, "build.properties").toPath(), Arrays.asList("tainted=@buildIsTainted@"));
+        File unfiltered = folder.newFolder("unfiltered");
+        Files.write(new File(unfiltered, "branch.txt").toPath(), Arrays.asList("${scmBranch}"));
+
+        MavenProject project = newProject("a");
+        project.addResource(newResource(filtered, true));
+        project.addResource(newResource(unfiltered, false));
+
+        List<MavenProject> projects = Collections.singletonList(project);
+        assertEquals(Collections.emptySet(), PropertyReferences.find(null, projects, NAMES, false, log));
+        assertEquals(
+                Collections.singleton("buildIsTainted"), PropertyReferences.find(null, projects, NAMES, true, log));
+    }
+
+    private static MavenProject newProject(String artifactId) {
+        Model model = new Model();
+        model.setGroupId("test");
+        model.setArtifactId(artifactId);
+        model.setVersion("1.0");
+        model.setBuild(new Build());
+        return new MavenProject(model);
+    }
+
+    private static Resource newResource(File directory, boolean filtering) {
+        Resource resource = new Resource();
+        resource.setDirectory(directory.getPath());
+        resource.setFiltering(filtering);
+        return resource;
+    }
+}
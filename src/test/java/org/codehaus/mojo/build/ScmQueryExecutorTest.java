@@ -0,0 +1,63 @@
+package org.codehaus.mojo.build;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.maven.plugin.MojoExecutionException;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ScmQueryExecutorTest {
+    @Test
+    public void runsQueriesConcurrently() throws Exception {
+        CountDownLatch started = new CountDownLatch(2);
+        try (ScmQueryExecutor queries = ScmQueryExecutor.create(2)) {
+            Future<String> first = queries.submit(() -> awaitOther(started, "first"));
+            Future<String> second = queries.submit(() -> awaitOther(started, "second"));
+
+            assertEquals("first", ScmQueryExecutor.get(first));
+            assertEquals("second", ScmQueryExecutor.get(second));
+        }
+    }
+
+    @Test
+    public void rethrowsMojoExecutionException() throws Exception {
+        MojoExecutionException failure = new MojoExecutionException("Cannot get the revision");
+        try (ScmQueryExecutor queries = ScmQueryExecutor.create(2)) {
+            Future<String> result = queries.submit(() -> {
+                throw failure;
+            });
+
+            ScmQueryExecutor.get(result);
+            fail("Expected a MojoExecutionException");
+        } catch (MojoExecutionException e) {
+            assertSame(failure, e);
+        }
+    }
+
+    @Test
+    public void wrapsOtherExceptions() throws Exception {
+        try (ScmQueryExecutor queries = ScmQueryExecutor.create(2)) {
+            Future<String> result = queries.submit(() -> {
+                throw new Exception("Cannot run svn");
+            });
+
+            ScmQueryExecutor.get(result);
+            fail("Expected a MojoExecutionException");
+        } catch (MojoExecutionException e) {
+            assertEquals("Cannot run svn", e.getCause().getMessage());
+        }
+    }
+
+    private static String awaitOther(CountDownLatch started, String result) throws InterruptedException {
+        started.countDown();
+        // only returns if both queries run at the same time
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        return result;
+    }
+}
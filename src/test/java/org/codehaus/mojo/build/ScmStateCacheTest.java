@@ -0,0 +1,158 @@
+package org.codehaus.mojo.build;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class ScmStateCacheTest {
+    @Rule
+    public final TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void keepsResultsOfSameState() throws Exception {
+        File file = new File(folder.getRoot(), "target/buildnumber/scm-state.properties");
+
+        ScmStateCache.load(file).put("a", "revision", "1234");
+        ScmStateCache.load(file).put("a", "branch", "main");
+
+        ScmStateCache cache = ScmStateCache.load(file);
+        assertEquals("1234", cache.get("a", "revision"));
+        assertEquals("main", cache.get("a", "branch"));
+        assertNull(cache.get("b", "revision"));
+    }
+
+    @Test
+    public void keepsResultsStoredSinceLoading() throws Exception {
+        File file = new File(folder.getRoot(), "scm-state.properties");
+        ScmStateCache first = ScmStateCache.load(file);
+        ScmStateCache second = ScmStateCache.load(file);
+
+        first.put("a", "revision", "1234");
+        second.put("a", "branch", "main");
+
+        ScmStateCache cache = ScmStateCache.load(file);
+        assertEquals("1234", cache.get("a", "revision"));
+        assertEquals("main", cache.get("a", "branch"));
+    }
+
+    @Test
+    public void dropsResultsOfOtherState() throws Exception {
+        File file = new File(folder.getRoot(), "scm-state.properties");
+
+        ScmStateCache.load(file).put("a", "revision", "1234");
+        ScmStateCache.load(file).put("b", "branch", "main");
+
+        ScmStateCache cache = ScmStateCache.load(file);
+        assertNull(cache.get("b", "revision"));
+        assertEquals("main", cache.get("b", "branch"));
+    }
+
+    @Test
+    public void ignoresUnreadableFile() throws Exception {
+        File file = folder.newFile("scm-state.properties");
+        Files.write(file.toPath(), "fingerprint=\\u00".getBytes(StandardCharsets.ISO_8859_1));
+
+        assertNull(ScmStateCache.load(file).get("a", "revision"));
+    }
+
+    @Test
+    public void gitFingerprintChangesOnCommitAndCheckout() throws Exception {
+        Assume.assumeTrue("git is not available", isGitAvailable());
+        File repository = folder.newFolder("repository");
+        git(repository, "init", "-q");
+        git(repository, "checkout", "-q", "-b", "main");
+        commit(repository, "first");
+
+        String first = ScmStateCache.fingerprint(new File(repository, "sub"), "git");
+        assertNotNull(first);
+        assertEquals(first, ScmStateCache.fingerprint(repository, "git"));
+
+        Thread.sleep(10);
+        commit(repository, "second");
+        String second = ScmStateCache.fingerprint(repository, "git");
+        assertNotEquals(first, second);
+
+        Thread.sleep(10);
+        git(repository, "checkout", "-q", "-b", "other");
+        assertNotEquals(second, ScmStateCache.fingerprint(repository, "git"));
+    }
+
+    @Test
+    public void noFingerprintOutsideWorkingCopy() throws Exception {
+        File directory = folder.newFolder("plain");
+
+        assertNull(ScmStateCache.fingerprint(directory, "svn"));
+        assertNull(ScmStateCache.fingerprint(directory, "cvs"));
+    }
+
+    @Test
+    public void svnFingerprintUsesWorkingCopyDatabase() throws Exception {
+        File workingCopy = folder.newFolder("svn");
+        File database = new File(workingCopy, ".svn/wc.db");
+        database.getParentFile().mkdirs();
+        Files.write(database.toPath(), new byte[] {1});
+        File module = new File(workingCopy, "module");
+        module.mkdirs();
+
+        String first = ScmStateCache.fingerprint(module, "svn");
+        Files.write(database.toPath(), new byte[] {1, 2});
+
+        assertNotEquals(first, ScmStateCache.fingerprint(module, "svn"));
+    }
+
+    private static void commit(File repository, String message) throws Exception {
+        File file = new File(repository, "sub/" + message + ".txt");
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), message.getBytes(StandardCharsets.UTF_8));
+        git(repository, "add", "-A");
+        git(repository, "commit", "-q", "-m", message);
+    }
+
+    private static boolean isGitAvailable() {
+        try {
+            git(new File("."), "--version");
+            return true;
+        } catch (Exception e) {
+            return false;
+        }
+    }
+
+    private static String git(File directory, String... args) throws IOException, InterruptedException {
+        List<String> command =
+                new ArrayList<>(Arrays.asList("git", "-c", "user.name=test", "-c", "user.email=test@example.org"));
+        command.addAll(Arrays.asList(args));
+        Process process = new ProcessBuilder(command)
+                .directory(directory)
+                .redirectErrorStream(true)
+                .start();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (InputStream in = process.getInputStream()) {
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                output.write(buffer, 0, read);
+            }
+        }
+        String text = new String(output.toByteArray(), StandardCharsets.UTF_8).trim();
+        if (process.waitFor() != 0) {
+            throw new IOException(command + " failed: " + text);
+        }
+        return text;
+    }
+}
@@ -0,0 +1,245 @@
+package org.codehaus.mojo.build;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.maven.execution.DefaultMavenExecutionRequest;
+import org.apache.maven.execution.DefaultMavenExecutionResult;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.scm.ScmException;
+import org.eclipse.aether.DefaultRepositorySystemSession;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SessionCacheTest {
+    private final Log log = new SystemStreamLog();
+
+    @SuppressWarnings("deprecation")
+    static MavenSession newSession() {
+        return new MavenSession(
+                null,
+                new DefaultRepositorySystemSession(),
+                new DefaultMavenExecutionRequest(),
+                new DefaultMavenExecutionResult());
+    }
+
+    @Test
+    public void sameCacheWithinSession() {
+        MavenSession session = newSession();
+
+        assertSame(SessionCache.of(session), SessionCache.of(session));
+        assertNotSame(SessionCache.of(session), SessionCache.of(newSession()));
+        assertNotSame(SessionCache.of(null), SessionCache.of(null));
+    }
+
+    @Test
+    public void loadsOnlyOnce() throws Exception {
+        SessionCache cache = SessionCache.of(newSession());
+        AtomicInteger loads = new AtomicInteger();
+
+        SessionCache.Loader<String, ScmException> loader = () -> {
+            loads.incrementAndGet();
+            return "abc";
+        };
+        for (int i = 0; i < 3; i++) {
+            assertEquals("abc", cache.get("revision", loader, log));
+        }
+
+        assertEquals(1, loads.get());
+        assertEquals(2, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void cachesNull() throws Exception {
+        SessionCache cache = SessionCache.of(newSession());
+        AtomicInteger loads = new AtomicInteger();
+
+        SessionCache.Loader<String, ScmException> loader = () -> {
+            loads.incrementAndGet();
+            return null;
+        };
+        assertNull(cache.get("branch", loader, log));
+        assertNull(cache.get("branch", loader, log));
+
+        assertEquals(1, loads.get());
+    }
+
+    @Test
+    public void doesNotCacheFailures() throws Exception {
+        SessionCache cache = SessionCache.of(newSession());
+
+        try {
+            cache.get(
+                    "status",
+                    () -> {
+                        throw new ScmException("failed");
+                    },
+                    log);
+            fail("expected ScmException");
+        } catch (ScmException e) {
+            assertEquals("failed", e.getMessage());
+        }
+
+        assertEquals("ok", cache.get("status", () -> "ok", log));
+    }
+
+    @Test
+    public void concurrentLookupsWaitForOneComputation() throws Exception {
+        int threads = 16;
+        SessionCache cache = SessionCache.of(newSession());
+        AtomicInteger loads = new AtomicInteger();
+        CyclicBarrier start = new CyclicBarrier(threads);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (int round = 0; round < 50; round++) {
+                String key = "revision " + round;
+                List<Future<String>> results = new ArrayList<>();
+                for (int i = 0; i < threads; i++) {
+                    results.add(executor.submit(() -> {
+                        start.await();
+                        return cache.get(
+                                key,
+                                () -> {
+                                    int load = loads.incrementAndGet();
+                                    Thread.sleep(5);
+                                    return "r" + load;
+                                },
+                                log);
+                    }));
+                }
+
+                Set<String> values = new HashSet<>();
+                for (Future<String> result : results) {
+                    values.add(result.get(10, TimeUnit.SECONDS));
+                }
+                assertEquals(1, values.size());
+                assertEquals(round + 1, loads.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(50, cache.getMisses());
+        assertEquals(50 * (threads - 1), cache.getHits());
+    }
+
+    @Test
+    public void concurrentLookupsTryAgainAfterFailure() throws Exception {
+        int threads = 8;
+        SessionCache cache = SessionCache.of(newSession());
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch waiting = new CountDownLatch(threads - 1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            Future<String> failed = executor.submit(() -> cache.get(
+                    "status",
+                    () -> {
+                        loads.incrementAndGet();
+                        loading.countDown();
+                        waiting.await();
+                        Thread.sleep(50);
+                        throw new ScmException("failed");
+                    },
+                    log));
+            loading.await();
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 1; i < threads; i++) {
+                results.add(executor.submit(() -> {
+                    waiting.countDown();
+                    return cache.get(
+                            "status",
+                            () -> {
+                                loads.incrementAndGet();
+                                return "ok";
+                            },
+                            log);
+                }));
+            }
+
+            try {
+                failed.get(10, TimeUnit.SECONDS);
+                fail("expected ScmException");
+            } catch (ExecutionException e) {
+                assertEquals("failed", e.getCause().getMessage());
+            }
+            for (Future<String> result : results) {
+                assertEquals("ok", result.get(10, TimeUnit.SECONDS));
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    public void lookupsWaitingForEachOtherDoNotDeadlock() throws Exception {
+        SessionCache cache = SessionCache.of(newSession());
+        CyclicBarrier started = new CyclicBarrier(2);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> a = executor.submit(() -> cache.get(
+                    "a",
+                    () -> {
+                        started.await();
+                        return "a" + cache.get("b", () -> "b", log);
+                    },
+                    log));
+            Future<String> b = executor.submit(() -> cache.get(
+                    "b",
+                    () -> {
+                        started.await();
+                        return "b" + cache.get("a", () -> "a", log);
+                    },
+                    log));
+
+            String valueOfA = a.get(10, TimeUnit.SECONDS);
+            String valueOfB = b.get(10, TimeUnit.SECONDS);
+            // one of the lookups runs its loader instead of waiting for the other
+            assertTrue(valueOfA + " " + valueOfB, valueOfA.equals("ab") || valueOfB.equals("ba"));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void nestedLookupOfSameKeyDoesNotWait() throws Exception {
+        SessionCache cache = SessionCache.of(newSession());
+
+        String value = cache.get("branch", () -> cache.get("branch", () -> "inner", log) + "-outer", log);
+
+        assertEquals("inner-outer", value);
+        assertEquals("inner-outer", cache.get("branch", () -> "again", log));
+    }
+
+    @Test
+    public void keysOfSameWorkingCopyAreEqual() {
+        ScmCacheKey key = new ScmCacheKey("revision", ScmCacheKey.canonical(new File(".")), "git", null, 0, false);
+
+        assertEquals(key, new ScmCacheKey("revision", ScmCacheKey.canonical(new File(".")), "git", null, 0, false));
+        assertEquals("git", ScmCacheKey.getScmType("scm:git:https://github.com/mojohaus/buildnumber-maven-plugin.git"));
+        assertEquals("svn", ScmCacheKey.getScmType("scm:svn|http://svn.example.org/trunk"));
+        assertNull(ScmCacheKey.getScmType(""));
+    }
+}
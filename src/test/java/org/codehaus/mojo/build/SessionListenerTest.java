@@ -0,0 +1,118 @@
+package org.codehaus.mojo.build;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.maven.execution.AbstractExecutionListener;
+import org.apache.maven.execution.ExecutionEvent;
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.model.Plugin;
+import org.apache.maven.plugin.MojoExecution;
+import org.apache.maven.plugin.logging.Log;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.apache.maven.project.MavenProject;
+import org.junit.Test;
+
+import static java.util.Arrays.asList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SessionListenerTest {
+    private final Log log = new SystemStreamLog();
+
+    @Test
+    public void runsActionsOnceWhenSessionEnds() {
+        MavenSession session = SessionCacheTest.newSession();
+        List<String> calls = new ArrayList<>();
+        session.getRequest().setExecutionListener(new AbstractExecutionListener() {
+            @Override
+            public void mojoStarted(ExecutionEvent event) {
+                calls.add("mojoStarted");
+            }
+
+            @Override
+            public void sessionEnded(ExecutionEvent event) {
+                calls.add("sessionEnded");
+            }
+        });
+
+        assertTrue(SessionListener.atSessionEnd(session, log, () -> calls.add("first")));
+        assertTrue(SessionListener.atSessionEnd(session, log, () -> calls.add("second")));
+
+        session.getRequest().getExecutionListener().mojoStarted(newMojoStarted(new MavenProject()));
+        assertEquals(asList("mojoStarted"), calls);
+
+        session.getRequest().getExecutionListener().sessionEnded(null);
+        session.getRequest().getExecutionListener().sessionEnded(null);
+        assertEquals(asList("mojoStarted", "sessionEnded", "first", "second", "sessionEnded"), calls);
+    }
+
+    @Test
+    public void runsActionsBeforeEachMojo() {
+        MavenSession session = SessionCacheTest.newSession();
+        MavenProject project = new MavenProject();
+        List<MavenProject> projects = new ArrayList<>();
+
+        assertTrue(SessionListener.beforeMojo(session, log, (started, executions) -> projects.add(started)));
+
+        session.getRequest().getExecutionListener().mojoStarted(newMojoStarted(project));
+        session.getRequest().getExecutionListener().mojoSucceeded(newMojoStarted(project));
+        session.getRequest().getExecutionListener().mojoStarted(newMojoStarted(project));
+        assertEquals(asList(project, project), projects);
+
+        session.getRequest().getExecutionListener().sessionEnded(null);
+        session.getRequest().getExecutionListener().mojoStarted(newMojoStarted(project));
+        assertEquals(asList(project, project), projects);
+    }
+
+    @Test
+    public void passesForkedGoals() {
+        MavenSession session = SessionCacheTest.newSession();
+        MojoExecution forking = new MojoExecution(new Plugin(), "forking", "default");
+        MojoExecution forked = new MojoExecution(new Plugin(), "forked", "default");
+        MojoExecution forkedTwice = new MojoExecution(new Plugin(), "forked-twice", "default");
+        forking.setForkedExecutions("project", asList(forked));
+        forked.setForkedExecutions("project", asList(forkedTwice));
+        List<MojoExecution> started = new ArrayList<>();
+
+        assertTrue(SessionListener.beforeMojo(session, log, (project, executions) -> started.addAll(executions)));
+
+        session.getRequest()
+                .getExecutionListener()
+                .forkStarted(newEvent(ExecutionEvent.Type.ForkStarted, new MavenProject(), forking));
+        assertEquals(asList(forked, forkedTwice), started);
+    }
+
+    static ExecutionEvent newMojoStarted(MavenProject project) {
+        return newEvent(ExecutionEvent.Type.MojoStarted, project, null);
+    }
+
+    static ExecutionEvent newEvent(ExecutionEvent.Type type, MavenProject project, MojoExecution execution) {
+        return new ExecutionEvent() {
+            @Override
+            public Type getType() {
+                return type;
+            }
+
+            @Override
+            public MavenSession getSession() {
+                return null;
+            }
+
+            @Override
+            public MavenProject getProject() {
+                return project;
+            }
+
+            @Override
+            public MojoExecution getMojoExecution() {
+                return execution;
+            }
+
+            @Override
+            public Exception getException() {
+                return null;
+            }
+        };
+    }
+}
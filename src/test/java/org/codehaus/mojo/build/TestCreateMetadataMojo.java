@@ -0,0 +1,78 @@
+package org.codehaus.mojo.build;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TestCreateMetadataMojo {
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void writesNewFile() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "build.properties");
+        byte[] content = "a=1\n".getBytes(StandardCharsets.ISO_8859_1);
+
+        assertTrue(CreateMetadataMojo.writeIfChanged(content, file.toPath()));
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void keepsUnchangedFile() throws IOException {
+        File file = temporaryFolder.newFile("build.properties");
+        byte[] content = "a=1\n".getBytes(StandardCharsets.ISO_8859_1);
+        Files.write(file.toPath(), content);
+        assertTrue(file.setLastModified(1000000000000L));
+
+        assertFalse(CreateMetadataMojo.writeIfChanged(content, file.toPath()));
+        assertEquals(1000000000000L, file.lastModified());
+    }
+
+    @Test
+    public void rewritesChangedFile() throws IOException {
+        File file = temporaryFolder.newFile("build.properties");
+        Files.write(file.toPath(), "a=1\n".getBytes(StandardCharsets.ISO_8859_1));
+        byte[] content = "a=2\n".getBytes(StandardCharsets.ISO_8859_1);
+
+        assertTrue(CreateMetadataMojo.writeIfChanged(content, file.toPath()));
+        assertArrayEquals(content, Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void writesManyFilesInParallel() throws IOException {
+        byte[] content = "a=1\n".getBytes(StandardCharsets.ISO_8859_1);
+        Map<Path, byte[]> contents = new LinkedHashMap<>();
+        for (int i = 0; i < 4 * CreateMetadataMojo.PARALLEL_WRITE_THRESHOLD; i++) {
+            contents.put(
+                    temporaryFolder.getRoot().toPath().resolve("dir" + i % 3).resolve(i + ".properties"), content);
+        }
+        Path unchanged = contents.keySet().iterator().next();
+        Files.createDirectories(unchanged.getParent());
+        Files.write(unchanged, content);
+
+        assertEquals(contents.size() - 1, CreateMetadataMojo.writeIfChanged(contents));
+
+        for (Path file : contents.keySet()) {
+            assertArrayEquals(content, Files.readAllBytes(file));
+        }
+        // no temporary files are left behind
+        int files = 0;
+        for (int i = 0; i < 3; i++) {
+            files += new File(temporaryFolder.getRoot(), "dir" + i).list().length;
+        }
+        assertEquals(contents.size(), files);
+    }
+}
@@ -21,12 +21,15 @@ package org.codehaus.mojo.build;
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
  */
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
 import java.util.Locale;
 import java.util.Optional;
+import java.util.Properties;
 
 import org.apache.maven.scm.CommandParameters;
 import org.apache.maven.scm.ScmBranch;
@@ -63,6 +66,7 @@ import org.junit.rules.TemporaryFolder;
 
 import static java.util.Arrays.asList;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 public class TestCreateMojo {
@@ -201,6 +205,50 @@ public class TestCreateMojo {
         assertEquals("1--2", rev);
     }
 
+    @Test
+    public void testUnusedItemsAreNotEvaluated() throws Exception {
+        File file = new File(folder.getRoot(), "target/buildNumber.properties");
+        CreateMojo mojo = new CreateMojo();
+        mojo.setBuildNumberPropertiesFileLocation(file);
+        mojo.setFormat("{0}-{2}");
+        mojo.setItems(asList("buildNumber0", "buildNumber1", "buildNumber0", "scmVersion"));
+        mojo.setScmManager(new ScmManagerMock() {
+            @Override
+            public ScmRepository makeScmRepository(String string) {
+                throw new AssertionError("the SCM must not be queried");
+            }
+        });
+        mojo.setUrlScm("http://nonexistent");
+
+        mojo.execute();
+
+        assertEquals("1-2", mojo.getRevision());
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(file)) {
+            properties.load(in);
+        }
+        assertEquals("2", properties.getProperty("buildNumber0"));
+        assertFalse(properties.containsKey("buildNumber1"));
+    }
+
+    @Test
+    public void testBuildNumberService() throws Exception {
+        try (LocalCounterServer server = LocalCounterServer.start()) {
+            CreateMojo mojo = new CreateMojo();
+            mojo.setBuildNumberServiceUrl(server.getUrl());
+            mojo.setBuildNumberLeaseSize(100);
+            mojo.setBuildNumberLeaseFile(new File(folder.getRoot(), "leases.properties"));
+            mojo.setFormat("{0}-{1}");
+            mojo.setItems(asList("buildNumber0", "buildNumber1"));
+
+            mojo.execute();
+            assertEquals("1-1", mojo.getRevision());
+            mojo.execute();
+            assertEquals("2-2", mojo.getRevision());
+            assertEquals(2, server.getLeases());
+        }
+    }
+
     private class ScmManagerMock implements ScmManager {
 
         public ScmRepository makeScmRepository(String string)
@@ -0,0 +1,102 @@
+package org.codehaus.mojo.build;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.apache.maven.execution.MavenSession;
+import org.apache.maven.plugin.logging.SystemStreamLog;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class TimestampFormatsTest {
+    private static final String[] PATTERNS = {
+        "yyyy-MM-dd'T'HH:mm:ss.SSSZ",
+        "yyyyMMdd-HHmm",
+        "yy/M/d h:mm a",
+        "EEE, d MMM yyyy HH:mm:ss z",
+        "EEEE, MMMM dd, yyyy K:mm zzzz",
+        "yyyy-MM-dd'T'HH:mm:ssXXX",
+        "D k XX",
+        "'build' yyyy.MM.dd [HH#mm] {ss}",
+        "yyyy 'o''clock' ''HH''",
+        "y-yyy-yyyyy",
+        "MMMMM EEEEE",
+        // not translated
+        "u F w W",
+        "S",
+        "yyyy-MM-dd HH:mm X",
+        "YYYY-'W'ww",
+        "yyyy G",
+    };
+
+    private static final String[] TIME_ZONES = {"UTC", "America/Los_Angeles", "Asia/Kolkata", "GMT+05:30", "Nowhere"};
+
+    private static final Locale[] LOCALES = {
+        Locale.US, Locale.GERMANY, Locale.JAPAN, new Locale("ru", "RU"), new Locale("th", "TH"), new Locale("ar", "EG")
+    };
+
+    private static final Date[] DATES = {new Date(0), new Date(1_790_000_123_456L), new Date(1_752_501_600_007L)};
+
+    @Test
+    public void formatsLikeSimpleDateFormat() {
+        for (String pattern : PATTERNS) {
+            for (String timeZoneId : TIME_ZONES) {
+                TimeZone timeZone = TimeZone.getTimeZone(timeZoneId);
+                for (Locale locale : LOCALES) {
+                    SimpleDateFormat expected = new SimpleDateFormat(pattern, locale);
+                    expected.setTimeZone(timeZone);
+                    TimestampFormats.TimestampFormat actual = TimestampFormats.get(pattern, timeZone, locale);
+                    for (Date date : DATES) {
+                        assertEquals(
+                                pattern + " in " + timeZoneId + " for " + locale,
+                                expected.format(date),
+                                actual.format(date));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void translatesPatterns() {
+        assertEquals("yyyy'-'MM'-'dd", TimestampFormats.toDateTimePattern("yyyy-MM-dd"));
+        assertEquals("'T'HH''''", TimestampFormats.toDateTimePattern("'T'HH''"));
+        assertEquals("'['mm']'", TimestampFormats.toDateTimePattern("[mm]"));
+        assertNull(TimestampFormats.toDateTimePattern("yyyy-MM-dd'T"));
+        assertNull(TimestampFormats.toDateTimePattern("SS"));
+        assertNull(TimestampFormats.toDateTimePattern("uuuu"));
+    }
+
+    @Test
+    public void reusesFormats() {
+        TimeZone timeZone = TimeZone.getTimeZone("UTC");
+
+        assertSame(
+                TimestampFormats.get("yyyyMMdd", timeZone, Locale.US),
+                TimestampFormats.get("yyyyMMdd", timeZone, Locale.US));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsInvalidPattern() {
+        TimestampFormats.get("yyyy-MM-dd b", TimeZone.getTimeZone("UTC"), Locale.US);
+    }
+
+    @Test
+    public void sameTimestampWithinSession() {
+        SystemStreamLog log = new SystemStreamLog();
+        MavenSession session = SessionCacheTest.newSession();
+
+        String timestamp = Utils.createTimestamp(session, "yyyyMMddHHmmssSSS", "UTC", log);
+        assertNotNull(timestamp);
+        assertSame(timestamp, Utils.createTimestamp(session, "yyyyMMddHHmmssSSS", "UTC", log));
+        assertEquals(
+                String.valueOf(Utils.getBuildTime(session, log).getTime()),
+                Utils.createTimestamp(session, "", null, log));
+    }
+}
@@ -85,6 +85,28 @@ public class BuildNumberMojoTest {
         Assert.assertEquals("6d36c746e82f00c5913954f9178f40224497b2f3", scmRev);
     }
 
+    @Test
+    public void basicItJGitTest() throws Exception {
+        File projDir = resources.getBasedir("basic-it-git-jgit");
+
+        MavenExecution mavenExec = maven.forProject(projDir);
+        MavenExecutionResult result = mavenExec.execute("clean");
+        result.assertErrorFreeLog();
+        File testDir = result.getBasedir();
+        FileUtils.copyDirectoryStructure(new File(testDir, "dotGitDir"), new File(testDir, ".git"));
+        result = mavenExec.execute("clean", "verify");
+        result.assertLogText("Change the default 'git' provider implementation to 'jgit'.");
+        result.assertLogText("Storing buildNumber: 6d36c746e82f00c5913954f9178f40224497b2f3");
+        result.assertLogText("Storing scmBranch: master");
+
+        File artifact = new File(testDir, "target/buildnumber-maven-plugin-basic-it-jgit-1.0-SNAPSHOT.jar");
+        JarFile jarFile = new JarFile(artifact);
+        Attributes manifest = jarFile.getManifest().getMainAttributes();
+        jarFile.close();
+        String scmRev = manifest.getValue("SCM-Revision");
+        Assert.assertEquals("6d36c746e82f00c5913954f9178f40224497b2f3", scmRev);
+    }
+
     @Test
     public void basicItGitTestWithLastCommittedRevision() throws Exception {
         File projDir = resources.getBasedir("basic-it-git-lastCommittedRevision");